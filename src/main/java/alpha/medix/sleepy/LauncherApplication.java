@@ -8,24 +8,45 @@ import alpha.medix.sleepy.model.Schedule;
 import alpha.medix.sleepy.model.Schedule.Slot;
 import alpha.medix.sleepy.model.Schedule.Type;
 import alpha.medix.sleepy.model.ScheduleManager;
+import alpha.medix.sleepy.model.ScheduleManager.ScheduleListener;
 import alpha.medix.sleepy.model.Style;
 import alpha.medix.sleepy.model.UserCredentialManager;
-import alpha.medix.sleepy.model.UserCredentials;
+import alpha.medix.sleepy.services.AuthenticationService;
+import alpha.medix.sleepy.services.AutosaveService;
+import alpha.medix.sleepy.services.AutosaveService.AutosaveStatistics;
+import alpha.medix.sleepy.services.ConsoleDispatchService;
 import alpha.medix.sleepy.services.DateTimeService;
 import alpha.medix.sleepy.services.MediaService;
 import alpha.medix.sleepy.services.OptionsService;
 import alpha.medix.sleepy.services.ParallelExecutionService;
+import alpha.medix.sleepy.services.ParallelExecutionService.Priority;
+import alpha.medix.sleepy.services.PersistenceService;
+import alpha.medix.sleepy.services.ScheduleArchiveService;
+import alpha.medix.sleepy.services.ScheduleJournalService;
 import alpha.medix.sleepy.services.UserCredentialsService;
+import alpha.medix.sleepy.services.UserImportService;
+import alpha.medix.sleepy.services.UserImportService.ImportReport;
+import alpha.medix.sleepy.utils.PasswordHasher;
 import com.google.common.collect.ImmutableMap;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
@@ -53,6 +74,8 @@ import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.media.MediaPlayer;
 import javafx.scene.media.MediaView;
+import javafx.stage.FileChooser;
+import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import javafx.util.StringConverter;
@@ -86,6 +109,10 @@ public class LauncherApplication extends Application {
 
   private static final String LAUNCHER_ASSETS_PATH = "./assets/";
   private static final String LAUNCHER_CONFIG_PATH = "./config/";
+  private static final int MAXIMUM_SCHEDULES_IN_MEMORY_PER_USER = 16;
+  private static final int PASSWORD_HASH_ITERATIONS = PasswordHasher.DEFAULT_ITERATIONS;
+  private static final int MAXIMUM_REJECTIONS_TO_DISPLAY = 10;
+  private static final long AUTOSAVE_INTERVAL_IN_SECONDS = 30;
 
   private static final ImmutableMap<Theme, String> THEME_TO_LAUNCHER_LOOP_FILENAME = ImmutableMap.<Theme, String>builder()
       .put(Theme.CLASSIC,
@@ -94,10 +121,20 @@ public class LauncherApplication extends Application {
 
   private final DateTimeService dateTimeService = new DateTimeService();
   private final MediaService mediaService = new MediaService(LAUNCHER_ASSETS_PATH);
-  private final OptionsService optionsService = new OptionsService(LAUNCHER_CONFIG_PATH);
+  private final PersistenceService persistenceService = new PersistenceService();
+  private final OptionsService optionsService = new OptionsService(LAUNCHER_CONFIG_PATH,
+      persistenceService);
   private final ParallelExecutionService parallelExecutionService = new ParallelExecutionService();
   private final UserCredentialsService userCredentialsService = new UserCredentialsService(
       LAUNCHER_CONFIG_PATH);
+  private final ScheduleArchiveService scheduleArchiveService = new ScheduleArchiveService(
+      LAUNCHER_CONFIG_PATH,
+      e -> consoleError("Failed to archive old schedules. Reason: %s.", e.getMessage()));
+  private final ScheduleJournalService scheduleJournalService = new ScheduleJournalService(
+      LAUNCHER_CONFIG_PATH, MAXIMUM_SCHEDULES_IN_MEMORY_PER_USER, scheduleArchiveService);
+  private final AutosaveService autosaveService = new AutosaveService(
+      AUTOSAVE_INTERVAL_IN_SECONDS,
+      (name, e) -> consoleError("Failed to autosave %s. Reason: %s.", name, e.getMessage()));
 
   private final Image titleLogo = mediaService.loadImage("Logo.png");
   private final Image optionsLogo = mediaService.loadImage("OptionsSmall.png");
@@ -106,22 +143,36 @@ public class LauncherApplication extends Application {
   private final Pane root;
   private final Scene scene;
   private final Options options;
+  private final PasswordHasher passwordHasher;
   private final UserCredentialManager userCredentialManager;
+  private final UserImportService userImportService;
+  private final AuthenticationService authenticationService;
   private final ScheduleManager scheduleManager;
   private final MediaView animatedBackground;
   private final ListView<String> console;
+  private final ConsoleDispatchService consoleDispatchService;
   private final TextField usernameTextField;
+  private final BooleanProperty isLoading;
   private Stage launcherStage;
 
   public LauncherApplication() {
     this.root = new StackPane();
     this.scene = new Scene(root);
     this.options = optionsService.loadDefaultOptions();
-    this.userCredentialManager = new UserCredentialManager();
-    this.scheduleManager = new ScheduleManager();
+    this.passwordHasher = new PasswordHasher(PASSWORD_HASH_ITERATIONS);
+    this.userCredentialManager = new UserCredentialManager(passwordHasher,
+        this::persistUserCredentials);
+    this.userImportService = new UserImportService(userCredentialManager,
+        userCredentialsService, passwordHasher, parallelExecutionService);
+    this.authenticationService = new AuthenticationService(userCredentialManager);
+    this.scheduleManager = new ScheduleManager(MAXIMUM_SCHEDULES_IN_MEMORY_PER_USER,
+        scheduleJournalService::archiveEvicted);
     this.animatedBackground = new MediaView();
     this.console = new ListView<>();
+    this.consoleDispatchService = new ConsoleDispatchService(
+        messages -> console.getItems().addAll(messages));
     this.usernameTextField = new TextField();
+    this.isLoading = new SimpleBooleanProperty(false);
   }
 
   @Override
@@ -143,7 +194,21 @@ public class LauncherApplication extends Application {
 
     consoleGreen("Welcome to the Sleepy Medix Scheduler!");
     updateOptionsTo(loadOptionsFromDisk());
-    updateUserCredentialsManagerWith(loadUserCredentialsFromDisk());
+    // Credentials and schedules are independent of each other, so they are loaded side by side
+    // while the launcher is already showing. Logging in waits until both are in.
+    isLoading.set(true);
+    CompletableFuture<Void> userCredentialsLoaded = parallelExecutionService
+        .submitBlocking(this::loadUserCredentialsFromDisk, Priority.INTERACTIVE);
+    CompletableFuture<Void> schedulesLoaded = parallelExecutionService
+        .submitBlocking(this::loadSchedulesFromDisk, Priority.INTERACTIVE);
+    CompletableFuture.allOf(userCredentialsLoaded, schedulesLoaded)
+        .whenCompleteAsync((ignored, e) -> {
+          if (e != null) {
+            consoleError("Failed to load from disk. Reason: %s.", e.getCause().getMessage());
+          }
+          startAutosave();
+          isLoading.set(false);
+        }, Platform::runLater);
 
     showLauncher();
   }
@@ -151,13 +216,48 @@ public class LauncherApplication extends Application {
   @Override
   public void stop() throws Exception {
     super.stop();
+    parallelExecutionService.shutdown();
+    // Every step is attempted even if an earlier one fails, and the failures are then reported
+    // together.
+    IOException shutdownException = new IOException("Failed to shut down cleanly.");
+    for (AutosaveStatistics unsavedTarget : autosaveService.shutdown()) {
+      shutdownException.addSuppressed(
+          new IOException(String.format("Changes were not saved to %s", unsavedTarget)));
+    }
+    runShutdownStep(scheduleJournalService::close, shutdownException);
+    scheduleArchiveService.shutdown();
+    authenticationService.shutdown();
+    persistenceService.shutdown();
+    runShutdownStep(userCredentialsService::close, shutdownException);
+    if (shutdownException.getSuppressed().length > 0) {
+      throw shutdownException;
+    }
+  }
+
+  private static void runShutdownStep(ShutdownStep shutdownStep, IOException shutdownException) {
     try {
-      optionsService.writeOptionsFileToDisk(options);
-      userCredentialsService.writeUserCredentialsToDisk(userCredentialManager.toList());
-    } catch (IOException ignored) {
+      shutdownStep.run();
+    } catch (IOException e) {
+      shutdownException.addSuppressed(e);
     }
   }
 
+  private interface ShutdownStep {
+
+    void run() throws IOException;
+  }
+
+  private void startAutosave() {
+    // Registered once everything has been loaded, so the loaded state is not written back.
+    autosaveService.register("options", options::getVersion,
+        () -> optionsService.writeOptionsFileToDisk(options));
+    autosaveService.register("user credentials", userCredentialManager::getVersion,
+        userCredentialsService::flush);
+    autosaveService.register("schedules", scheduleManager::getVersion,
+        scheduleJournalService::flush);
+    autosaveService.start();
+  }
+
   private void showLauncher() {
     animatedBackground.getMediaPlayer().play();
     launcherStage.show();
@@ -213,8 +313,13 @@ public class LauncherApplication extends Application {
     pane.add(labelFactory.apply("Password:"), 0, 2);
     pane.add(passwordField, 1, 2);
 
+    // Hashing happens on the authentication workers, so both buttons stay disabled until the
+    // current attempt has been answered.
+    BooleanProperty isAuthenticating = new SimpleBooleanProperty(false);
+
     Button registerNewUserButton = new Button("Register New User");
     leftDimensionSetter.accept(registerNewUserButton);
+    registerNewUserButton.disableProperty().bind(isAuthenticating.or(isLoading));
     pane.add(registerNewUserButton, 0, 4);
     registerNewUserButton.setOnAction(actionEvent -> {
       Optional<String> confirmedPasswordResult = confirmPasswordUsingDialog(
@@ -226,30 +331,75 @@ public class LauncherApplication extends Application {
           consoleError("Failed to register new user. Reason: Passwords did not match.");
           return;
         }
-        if (!userCredentialManager.registerNewUser(username, password)) {
-          consoleError(
-              "Failed to register new user. Reason: User with username \"%s\" already exists.",
-              username);
-          return;
-        }
-        consoleGreen("Successfully registered new user with username \"%s\"!", username);
+        isAuthenticating.set(true);
+        authenticationService.register(username, password)
+            .whenComplete((isRegistered, e) -> Platform.runLater(() -> {
+              isAuthenticating.set(false);
+              if (e != null) {
+                consoleError("Failed to register new user. Reason: %s.", e.getMessage());
+              } else if (!isRegistered) {
+                consoleError("Failed to register new user. Reason: User with username \"%s\" "
+                    + "already exists.", username);
+              } else {
+                consoleGreen("Successfully registered new user with username \"%s\"!", username);
+              }
+            }));
       });
     });
 
     Button loginButton = new Button("Login");
     rightDimensionSetter.accept(loginButton);
+    loginButton.disableProperty().bind(isAuthenticating.or(isLoading));
     pane.add(loginButton, 1, 4);
     loginButton.setOnAction(actionEvent -> {
       String username = usernameTextField.getText();
       String password = passwordField.getText();
-      if (!userCredentialManager.verifyExistingUser(username, password)) {
-        consoleError("Failed to login. Reason: invalid credentials.");
+      isAuthenticating.set(true);
+      authenticationService.login(username, password)
+          .whenComplete((isVerified, e) -> Platform.runLater(() -> {
+            isAuthenticating.set(false);
+            if (e != null) {
+              consoleError("Failed to login. Reason: %s.", e.getMessage());
+              return;
+            }
+            if (!isVerified) {
+              consoleError("Failed to login. Reason: invalid credentials.");
+              return;
+            }
+            consoleGreen("Successfully logged in as \"%s\"!", username);
+            hideLauncher();
+            schedulingStageFor(username).showAndWait();
+            showLauncher();
+          }));
+    });
+
+    BooleanProperty isImporting = new SimpleBooleanProperty(false);
+
+    Button importUsersButton = new Button("Import Users");
+    leftDimensionSetter.accept(importUsersButton);
+    importUsersButton.disableProperty().bind(isImporting.or(isLoading));
+    pane.add(importUsersButton, 0, 5);
+    importUsersButton.setOnAction(actionEvent -> {
+      FileChooser fileChooser = new FileChooser();
+      fileChooser.setTitle("Select User Roster");
+      fileChooser.getExtensionFilters()
+          .add(new ExtensionFilter("User Rosters (CSV or JSON)", "*.csv", "*.json"));
+      File rosterFile = fileChooser.showOpenDialog(launcherStage);
+      if (rosterFile == null) {
         return;
       }
-      consoleGreen("Successfully logged in as \"%s\"!", username);
-      hideLauncher();
-      schedulingStageFor(username).showAndWait();
-      showLauncher();
+      isImporting.set(true);
+      consoleLog("Importing users from \"%s\"...", rosterFile.getName());
+      parallelExecutionService.executeBlockingInParallel(
+          () -> importUsersFrom(rosterFile.toPath()),
+          importReport -> {
+            consoleGreen("%s.", importReport);
+            isImporting.set(false);
+          },
+          e -> {
+            consoleError("Failed to import users. Reason: %s.", e.getMessage());
+            isImporting.set(false);
+          });
     });
 
     pane.setAlignment(Pos.CENTER);
@@ -294,6 +444,7 @@ public class LauncherApplication extends Application {
     optionsButton.setOnAction(actionEvent -> {
       Optional<Options> newOptions = loadOptionsFromDialog();
       newOptions.ifPresent(this::updateOptionsTo);
+      autosaveService.saveNow();
     });
 
     root.getChildren().add(optionsButton);
@@ -431,36 +582,67 @@ public class LauncherApplication extends Application {
     return confirmedPasswordDialog.showAndWait();
   }
 
-  private List<UserCredentials> loadUserCredentialsFromDisk() {
-    List<UserCredentials> userCredentialsList = null;
-    consoleLog("Loading options from disk.");
+  private void loadUserCredentialsFromDisk() {
+    consoleLog("Loading user credentials from disk.");
     try {
-      userCredentialsList = userCredentialsService.loadUserCredentialsFromDisk();
+      int numberOfUsers = userCredentialsService.loadUserCredentialsInto(userCredentialManager);
+      consoleGreen("Successfully loaded %d user credentials from disk!", numberOfUsers);
+      return;
     } catch (IOException e) {
       consoleError("Failed to load user credentials from disk. Reason: %s.", e.getMessage());
     }
-    if (userCredentialsList != null) {
-      consoleGreen("Successfully loaded user credentials from disk!");
-    } else {
-      consoleLog("Writing new user credentials file to disk.");
-      try {
-        userCredentialsList = userCredentialsService.writeNewUserCredentialManagerFileToDisk();
-        consoleGreen("Successfully setup new user credentials file!");
-      } catch (IOException e) {
-        consoleError("Failed to write new user credentials file to disk. Reason: %s.",
-            e.getMessage());
-        consoleLog(
-            "Loading an empty set of user credentials. Any changes you make this session may not be saved.");
-        userCredentialsList = new LinkedList<>();
-        consoleGreen("Successfully loaded default options!");
+    consoleLog("Writing new user credentials file to disk.");
+    try {
+      userCredentialsService.writeNewUserCredentialManagerFileToDisk();
+      userCredentialsService.loadUserCredentialsInto(userCredentialManager);
+      consoleGreen("Successfully setup new user credentials file!");
+    } catch (IOException e) {
+      consoleError("Failed to write new user credentials file to disk. Reason: %s.",
+          e.getMessage());
+      consoleLog(
+          "Loading an empty set of user credentials. Any changes you make this session may not be saved.");
+      userCredentialManager.updateWith(new LinkedList<>());
+      consoleGreen("Successfully loaded default options!");
+    }
+  }
+
+  private void persistUserCredentials(String username, String hashedPassword) {
+    userCredentialsService.append(username, hashedPassword).whenComplete((ignored, e) -> {
+      if (e != null) {
+        consoleError("Failed to save user credentials to disk. Reason: %s.", e.getMessage());
       }
+    });
+  }
+
+  private void loadSchedulesFromDisk() {
+    consoleLog("Loading schedules from disk.");
+    try {
+      int numberOfSchedules = scheduleJournalService.replayInto(scheduleManager);
+      consoleGreen("Successfully loaded %d schedules from disk!", numberOfSchedules);
+    } catch (IOException e) {
+      consoleError("Failed to load schedules from disk. Reason: %s.", e.getMessage());
+      consoleLog("Any schedules you create this session may not be saved.");
     }
+  }
 
-    return userCredentialsList;
+  private ImportReport importUsersFrom(Path rosterPath)
+      throws IOException, InterruptedException {
+    ImportReport importReport = userImportService.importUsersFrom(rosterPath,
+        progress -> consoleLog("Imported %d users so far, rejected %d.",
+            progress.getImportedCount(), progress.getRejectedCount()));
+    importReport.getRejections().stream().limit(MAXIMUM_REJECTIONS_TO_DISPLAY).forEach(
+        rejection -> consoleError("Rejected user \"%s\". Reason: %s.", rejection.getUsername(),
+            rejection.getReason()));
+    return importReport;
   }
 
-  private void updateUserCredentialsManagerWith(List<UserCredentials> userCredentialsList) {
-    userCredentialManager.updateWith(userCredentialsList);
+  private void addSchedule(String username, Schedule schedule) {
+    scheduleManager.add(username, schedule);
+    scheduleJournalService.append(schedule).whenComplete((ignored, e) -> {
+      if (e != null) {
+        consoleError("Failed to save schedule to disk. Reason: %s.", e.getMessage());
+      }
+    });
   }
 
   private Stage schedulingStageFor(String username) {
@@ -491,6 +673,30 @@ public class LauncherApplication extends Application {
     GridPane.setHalignment(schedules, HPos.CENTER);
     pane.add(schedules, 0, 0);
 
+    // New schedules are appended one at a time rather than reloading the whole history. Evicted
+    // schedules stay listed, since they remain part of the user's history in the archive. The
+    // listener is registered before the history is read, so no schedule added in between is
+    // missed. If the version moved meanwhile, the listener may also report schedules that the
+    // history already holds, and those are skipped rather than listed twice.
+    Set<Schedule> alreadyListedSchedules = Collections.newSetFromMap(new IdentityHashMap<>());
+    ScheduleListener scheduleListener = (scheduleUsername, addedSchedule, evictedSchedules) -> {
+      if (scheduleUsername.equals(username)) {
+        Platform.runLater(() -> {
+          if (!alreadyListedSchedules.remove(addedSchedule)) {
+            schedules.getItems().add(addedSchedule);
+          }
+        });
+      }
+    };
+    long versionBeforeListening = scheduleManager.getVersion();
+    scheduleManager.addScheduleListener(scheduleListener);
+    stage.setOnHidden(windowEvent -> scheduleManager.removeScheduleListener(scheduleListener));
+    List<Schedule> history = scheduleManager.getSchedulesFor(username);
+    schedules.getItems().addAll(history);
+    if (scheduleManager.getVersion() != versionBeforeListening) {
+      alreadyListedSchedules.addAll(history);
+    }
+
     Button viewSelectedScheduleButton = new Button();
     viewSelectedScheduleButton.setText("View Selected Schedule");
     viewSelectedScheduleButton.setAlignment(Pos.CENTER);
@@ -514,12 +720,10 @@ public class LauncherApplication extends Application {
           break;
       }
       updatedScheduleResult.ifPresent(updatedSchedule -> {
-//        if (updatedSchedule.equals(schedule)) {
-//          return;
-//        }
-        scheduleManager.add(username, updatedSchedule);
-        schedules.getItems().clear();
-        schedules.getItems().addAll(scheduleManager.getSchedulesFor(username));
+        if (updatedSchedule.hasSameContentAs(schedule)) {
+          return;
+        }
+        addSchedule(username, updatedSchedule);
       });
     });
     pane.add(updateSelectedScheduleButton, 0, 2);
@@ -538,14 +742,36 @@ public class LauncherApplication extends Application {
             break;
         }
         scheduleResult.ifPresent(schedule -> {
-          scheduleManager.add(username, schedule);
-          schedules.getItems().clear();
-          schedules.getItems().addAll(scheduleManager.getSchedulesFor(username));
+          addSchedule(username, schedule);
         });
       });
     });
     pane.add(createNewScheduleButton, 0, 3);
 
+    Button showOlderSchedulesButton = new Button();
+    showOlderSchedulesButton.setText("Show Older Schedules");
+    showOlderSchedulesButton.setAlignment(Pos.CENTER);
+    showOlderSchedulesButton.setMinWidth(componentWidth);
+    showOlderSchedulesButton.setOnAction(actionEvent -> {
+      showOlderSchedulesButton.setDisable(true);
+      parallelExecutionService.executeBlockingInParallel(
+          () -> scheduleArchiveService.loadArchivedSchedulesFor(username),
+          olderSchedules -> {
+            // Schedules evicted while this stage was open are already listed.
+            LocalDateTime oldestListedTimeOfCreation = schedules.getItems().isEmpty()
+                ? LocalDateTime.MAX : schedules.getItems().get(0).getTimeOfCreation();
+            schedules.getItems().addAll(0, olderSchedules.stream()
+                .filter(schedule -> schedule.getTimeOfCreation()
+                    .isBefore(oldestListedTimeOfCreation))
+                .collect(Collectors.toList()));
+          },
+          e -> {
+            consoleError("Failed to load older schedules from disk. Reason: %s.", e.getMessage());
+            showOlderSchedulesButton.setDisable(false);
+          });
+    });
+    pane.add(showOlderSchedulesButton, 0, 4);
+
     return stage;
   }
 
@@ -776,8 +1002,9 @@ public class LauncherApplication extends Application {
   }
 
   private void consoleWrite(char symbol, String message, Object... arguments) {
-    Platform
-        .runLater(() -> console.getItems().add(String.format(symbol + " " + message, arguments)));
+    // Messages from every thread, including this one, go through the same queue so that they
+    // are shown in the order in which they were written.
+    consoleDispatchService.enqueue(symbol + " " + message, arguments);
   }
 
   private void consoleGreen(String greenMessage, Object... arguments) {
@@ -0,0 +1,46 @@
+package alpha.medix.sleepy.model;
+
+import alpha.medix.sleepy.model.Schedule.Activity;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ActivityDictionary {
+
+  public static final int ABSENT_ID = -1;
+
+  private static final Map<Activity, Integer> ACTIVITY_TO_ID = new ConcurrentHashMap<>();
+  private static volatile Activity[] idToActivity = new Activity[0];
+
+  public static int idOf(Activity activity) {
+    Integer id = ACTIVITY_TO_ID.get(activity);
+    return id != null ? id : intern(activity);
+  }
+
+  // For queries, which must not grow the dictionary with activities that no schedule uses. An
+  // activity that has never been interned is in no template, so ABSENT_ID matches nothing.
+  public static int existingIdOf(Activity activity) {
+    return ACTIVITY_TO_ID.getOrDefault(activity, ABSENT_ID);
+  }
+
+  public static Activity activityOf(int id) {
+    return idToActivity[id];
+  }
+
+  public static int size() {
+    return idToActivity.length;
+  }
+
+  private static synchronized int intern(Activity activity) {
+    Integer existingId = ACTIVITY_TO_ID.get(activity);
+    if (existingId != null) {
+      return existingId;
+    }
+    int id = idToActivity.length;
+    Activity[] updatedIdToActivity = Arrays.copyOf(idToActivity, id + 1);
+    updatedIdToActivity[id] = activity;
+    idToActivity = updatedIdToActivity;
+    ACTIVITY_TO_ID.put(activity, id);
+    return id;
+  }
+}
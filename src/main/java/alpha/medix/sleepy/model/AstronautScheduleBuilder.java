@@ -3,116 +3,110 @@ package alpha.medix.sleepy.model;
 import alpha.medix.sleepy.model.Schedule.Activity;
 import alpha.medix.sleepy.model.Schedule.Slot;
 import alpha.medix.sleepy.model.Schedule.Type;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import java.time.Duration;
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AstronautScheduleBuilder {
 
   private static final int NULL_RESPONSE_VALUE = -1;
+  private static final int BITS_PER_RESPONSE = 3;
+  private static final long RESPONSE_MASK = (1L << BITS_PER_RESPONSE) - 1;
+  private static final int TEMPLATE_CACHE_MAXIMUM_SIZE = 1 << 13;
 
-  private final List<Integer> chronoTypeQuestionResponseValues;
+  private static final LoadingCache<TemplateKey, ScheduleTemplate> TEMPLATE_CACHE = CacheBuilder
+      .newBuilder()
+      .maximumSize(TEMPLATE_CACHE_MAXIMUM_SIZE)
+      .build(CacheLoader.from(AstronautScheduleBuilder::buildTemplateFor));
+
+  // Each response occupies BITS_PER_RESPONSE bits holding its value plus one, so zero means
+  // that the question has not been answered yet.
+  private final AtomicLong packedResponseValues;
 
   public AstronautScheduleBuilder() {
-    int expectedNumberOfQuestionResponses = CHRONO_TYPE_QUESTIONS.size();
-    chronoTypeQuestionResponseValues = new ArrayList<>(expectedNumberOfQuestionResponses);
-    for (int i = 0; i < expectedNumberOfQuestionResponses; i++) {
-      chronoTypeQuestionResponseValues.add(NULL_RESPONSE_VALUE);
-    }
+    this.packedResponseValues = new AtomicLong();
   }
 
-  public synchronized void setQuestionResponse(int questionIndex, String response) {
+  public void setQuestionResponse(int questionIndex, String response) {
     ChronoTypeQuestion chronoTypeQuestion = CHRONO_TYPE_QUESTIONS.get(questionIndex);
-    int responseIndex = chronoTypeQuestion.possibleResponses.indexOf(response);
-    int responseValue = NULL_RESPONSE_VALUE;
-    if (responseIndex >= 0) {
-      responseValue = chronoTypeQuestion.start + responseIndex * chronoTypeQuestion.increment;
-    }
-    chronoTypeQuestionResponseValues.set(questionIndex, responseValue);
+    long encodedResponseValue =
+        chronoTypeQuestion.responseToValue.getOrDefault(response, NULL_RESPONSE_VALUE) + 1;
+    int shift = questionIndex * BITS_PER_RESPONSE;
+    long mask = RESPONSE_MASK << shift;
+
+    long current;
+    long updated;
+    do {
+      current = packedResponseValues.get();
+      updated = (current & ~mask) | (encodedResponseValue << shift);
+    } while (!packedResponseValues.compareAndSet(current, updated));
   }
 
-  public synchronized boolean isReady() {
-    boolean haveAllResponsesBeenProvided = chronoTypeQuestionResponseValues.stream()
-        .allMatch(value -> value != NULL_RESPONSE_VALUE);
-    return haveAllResponsesBeenProvided;
+  public boolean isReady() {
+    return isReady(packedResponseValues.get());
   }
 
-  public synchronized Schedule buildWith(String username, long workDurationInMinutes) {
-    if (!this.isReady()) {
+  public Schedule buildWith(String username, long workDurationInMinutes) {
+    long responseValues = packedResponseValues.get();
+    if (!isReady(responseValues)) {
       return null;
     }
-    Schedule schedule = new Schedule(username, Type.ASTRONAUT, workDurationInMinutes);
-    int chronoTypeScore = chronoTypeQuestionResponseValues.stream().reduce(0, Integer::sum);
-    if (chronoTypeScore < 31) {
-      addTimetableForDefiniteEvening(schedule, workDurationInMinutes);
-    } else if (chronoTypeScore < 42) {
-      addTimetableForModerateEvening(schedule, workDurationInMinutes);
-    } else if (chronoTypeScore < 58) {
-      addTimetableForIntermediate(schedule, workDurationInMinutes);
-    } else if (chronoTypeScore < 69) {
-      addTimetableForModerateMorning(schedule, workDurationInMinutes);
-    } else {
-      addTimetableForDefiniteMorning(schedule, workDurationInMinutes);
+    int chronoTypeScore = 0;
+    for (int i = 0; i < CHRONO_TYPE_QUESTIONS.size(); i++) {
+      chronoTypeScore += (int) ((responseValues >>> (i * BITS_PER_RESPONSE)) & RESPONSE_MASK) - 1;
     }
-    return schedule;
-  }
-
-  public static Schedule updateWithNap(Schedule schedule) {
-    List<Slot> slots = schedule.getSlots();
-    Map<Activity, LocalTime> activityToStartTime = slots.stream()
-        .collect(Collectors.toMap(Slot::getActivity, Slot::getStartTime));
-
-    Schedule updatedSchedule = new Schedule(schedule.getUsername(), Type.ASTRONAUT,
-        schedule.getWorkDurationInMinutes());
-    LocalTime bedTime = activityToStartTime.get(SLEEP_ACTIVITY);
-
-    addTimetableWithNap(updatedSchedule, bedTime, updatedSchedule.getWorkDurationInMinutes());
-    return updatedSchedule;
-  }
-
-  private void addTimetableForDefiniteEvening(Schedule schedule, long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, LocalTime.of(1, 30), workDurationInMinutes);
-  }
-
-  private void addTimetableForModerateEvening(Schedule schedule, long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, LocalTime.of(0, 30), workDurationInMinutes);
-  }
-
-  private void addTimetableForIntermediate(Schedule schedule, long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, LocalTime.of(23, 30), workDurationInMinutes);
-
+    ChronoType chronoType = ChronoType.fromScore(chronoTypeScore);
+    return new Schedule(username, Type.ASTRONAUT, workDurationInMinutes,
+        templateFor(chronoType, workDurationInMinutes, false));
   }
 
-  private void addTimetableForModerateMorning(Schedule schedule, long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, LocalTime.of(23, 15), workDurationInMinutes);
+  private static boolean isReady(long responseValues) {
+    long answeredMask = (responseValues | responseValues >>> 1 | responseValues >>> 2)
+        & ALL_ANSWERED_MASK;
+    return answeredMask == ALL_ANSWERED_MASK;
   }
 
-  private void addTimetableForDefiniteMorning(Schedule schedule, long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, LocalTime.of(21, 45), workDurationInMinutes);
+  public static Schedule updateWithNap(Schedule schedule) {
+    LocalTime bedTime = schedule.getSlots().stream()
+        .filter(slot -> slot.getActivity().equals(SLEEP_ACTIVITY))
+        .map(Slot::getStartTime)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Schedule has no sleep activity."));
+    ChronoType chronoType = ChronoType.fromBedTime(bedTime);
+
+    return new Schedule(schedule.getUsername(), Type.ASTRONAUT,
+        schedule.getWorkDurationInMinutes(),
+        templateFor(chronoType, schedule.getWorkDurationInMinutes(), true));
   }
 
-  private void addTimetableWithoutNap(Schedule schedule, LocalTime bedTime,
-      long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, bedTime, workDurationInMinutes, false);
+  private static ScheduleTemplate templateFor(ChronoType chronoType, long workDurationInMinutes,
+      boolean napIsNeeded) {
+    return TEMPLATE_CACHE
+        .getUnchecked(new TemplateKey(chronoType, workDurationInMinutes, napIsNeeded));
   }
 
-  private static void addTimetableWithNap(Schedule schedule, LocalTime bedTime,
-      long workDurationInMinutes) {
-    addTimetableWithoutNap(schedule, bedTime, workDurationInMinutes, true);
+  private static ScheduleTemplate buildTemplateFor(TemplateKey templateKey) {
+    ScheduleTemplate.Builder template = ScheduleTemplate.builder();
+    addTimetable(template, templateKey.chronoType.bedTime, templateKey.workDurationInMinutes,
+        templateKey.napIsNeeded);
+    return template.build();
   }
 
-  private static void addTimetableWithoutNap(Schedule schedule, LocalTime bedTime,
+  private static void addTimetable(ScheduleTemplate.Builder template, LocalTime bedTime,
       long workDurationInMinutes, boolean napIsNeeded) {
     LocalTime wakeupTime = bedTime.plusMinutes(SLEEP_DURATION);
-    Activity wakeupActivity = Activity.of("Wake Up");
-    schedule.addActivity(wakeupTime, wakeupActivity);
+    template.addActivity(wakeupTime, WAKEUP_ACTIVITY);
 
     LocalTime breakfastTime = wakeupTime.plusMinutes(WAKEUP_DURATION);
-    Activity breakfastActivity = Activity.of("Breakfast", BREAKFAST_TIPS);
-    schedule.addActivity(breakfastTime, breakfastActivity);
+    template.addActivity(breakfastTime, BREAKFAST_ACTIVITY);
 
     long morningDurationInMinutes = Duration.ofHours(5).toMinutes();
     long afternoonDurationInMinutes = Duration.ofDays(1).toMinutes() - morningDurationInMinutes
@@ -120,62 +114,120 @@ public class AstronautScheduleBuilder {
 
     LocalTime morningTime = breakfastTime.plusMinutes(BREAKFAST_DURATION);
     if (workDurationInMinutes > 0) {
-      Activity workActivity = Activity.of("Work Before Lunch");
-      schedule.addActivity(morningTime, workActivity);
+      template.addActivity(morningTime, WORK_BEFORE_LUNCH_ACTIVITY);
 
       // TODO verbose logic but it works
       if (workDurationInMinutes < morningDurationInMinutes) {
         LocalTime freeTime = morningTime.plusMinutes(workDurationInMinutes);
-        Activity freeActivity = Activity.of("Free Time Before Lunch");
-        schedule.addActivity(freeTime, freeActivity);
+        template.addActivity(freeTime, FREE_TIME_BEFORE_LUNCH_ACTIVITY);
       }
 
     } else {
-      Activity freeActivity = Activity.of("Free Time Before Lunch");
-      schedule.addActivity(morningTime, freeActivity);
+      template.addActivity(morningTime, FREE_TIME_BEFORE_LUNCH_ACTIVITY);
     }
 
     LocalTime lunchTime = morningTime.plusMinutes(morningDurationInMinutes);
-    Activity lunchActivity = Activity.of("Lunch", LUNCH_TIPS);
-    schedule.addActivity(lunchTime, lunchActivity);
+    template.addActivity(lunchTime, LUNCH_ACTIVITY);
 
     LocalTime afternoonTime;
     if (napIsNeeded) {
       LocalTime napTime = lunchTime.plusMinutes(LUNCH_DURATION);
-      Activity napActivity = NAP_ACTIVITY;
-      schedule.addActivity(napTime, napActivity);
+      template.addActivity(napTime, NAP_ACTIVITY);
       afternoonTime = napTime.plusMinutes(NAP_DURATION);
     } else {
       afternoonTime = lunchTime.plusMinutes(LUNCH_DURATION);
     }
 
     if (workDurationInMinutes <= morningDurationInMinutes) {
-      Activity freeActivity = Activity.of("Free Time After Lunch");
-      schedule.addActivity(afternoonTime, freeActivity);
+      template.addActivity(afternoonTime, FREE_TIME_AFTER_LUNCH_ACTIVITY);
     } else {
-      Activity workActivity = Activity.of("Work After Lunch");
-      schedule.addActivity(afternoonTime, workActivity);
+      template.addActivity(afternoonTime, WORK_AFTER_LUNCH_ACTIVITY);
 
       LocalTime freeTime = afternoonTime
           .plusMinutes(workDurationInMinutes - morningDurationInMinutes);
-      Activity freeActivity = Activity.of("Free Time After Lunch");
-      schedule.addActivity(freeTime, freeActivity);
+      template.addActivity(freeTime, FREE_TIME_AFTER_LUNCH_ACTIVITY);
     }
 
     LocalTime exerciseTime = afternoonTime.plusMinutes(afternoonDurationInMinutes);
-    Activity exerciseActivity = Activity.of("Exercise");
-    schedule.addActivity(exerciseTime, exerciseActivity);
+    template.addActivity(exerciseTime, EXERCISE_ACTIVITY);
 
     LocalTime dinnerTime = exerciseTime.plusMinutes(EXERCISE_DURATION);
-    Activity dinnerActivity = Activity.of("Dinner", DINNER_TIPS);
-    schedule.addActivity(dinnerTime, dinnerActivity);
+    template.addActivity(dinnerTime, DINNER_ACTIVITY);
 
     LocalTime restTime = dinnerTime.plusMinutes(DINNER_DURATION);
-    Activity restActivity = Activity.of("Rest", REST_TIPS);
-    schedule.addActivity(restTime, restActivity);
+    template.addActivity(restTime, REST_ACTIVITY);
+
+    template.addActivity(bedTime, SLEEP_ACTIVITY);
+  }
+
+  public enum ChronoType {
+    DEFINITE_EVENING(LocalTime.of(1, 30)),
+    MODERATE_EVENING(LocalTime.of(0, 30)),
+    INTERMEDIATE(LocalTime.of(23, 30)),
+    MODERATE_MORNING(LocalTime.of(23, 15)),
+    DEFINITE_MORNING(LocalTime.of(21, 45));
+
+    private final LocalTime bedTime;
+
+    ChronoType(LocalTime bedTime) {
+      this.bedTime = bedTime;
+    }
+
+    public LocalTime getBedTime() {
+      return bedTime;
+    }
+
+    public static ChronoType fromScore(int chronoTypeScore) {
+      if (chronoTypeScore < 31) {
+        return DEFINITE_EVENING;
+      } else if (chronoTypeScore < 42) {
+        return MODERATE_EVENING;
+      } else if (chronoTypeScore < 58) {
+        return INTERMEDIATE;
+      } else if (chronoTypeScore < 69) {
+        return MODERATE_MORNING;
+      }
+      return DEFINITE_MORNING;
+    }
+
+    public static ChronoType fromBedTime(LocalTime bedTime) {
+      return Arrays.stream(values())
+          .filter(chronoType -> chronoType.bedTime.equals(bedTime))
+          .findFirst()
+          .orElseThrow(() -> new IllegalArgumentException(
+              String.format("No chrono type has a bed time of %s.", bedTime)));
+    }
+  }
+
+  private static class TemplateKey {
+
+    private final ChronoType chronoType;
+    private final long workDurationInMinutes;
+    private final boolean napIsNeeded;
+
+    private TemplateKey(ChronoType chronoType, long workDurationInMinutes, boolean napIsNeeded) {
+      this.chronoType = chronoType;
+      this.workDurationInMinutes = workDurationInMinutes;
+      this.napIsNeeded = napIsNeeded;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(chronoType, workDurationInMinutes, napIsNeeded);
+    }
 
-    Activity sleepActivity = SLEEP_ACTIVITY;
-    schedule.addActivity(bedTime, sleepActivity);
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      } else if (obj instanceof TemplateKey) {
+        TemplateKey that = (TemplateKey) obj;
+        return this.chronoType == that.chronoType
+            && this.workDurationInMinutes == that.workDurationInMinutes
+            && this.napIsNeeded == that.napIsNeeded;
+      }
+      return false;
+    }
   }
 
   private static final long SLEEP_DURATION = Duration.ofHours(8).toMinutes();
@@ -415,6 +467,20 @@ public class AstronautScheduleBuilder {
           )
   );
 
+  private static final long ALL_ANSWERED_MASK = allAnsweredMaskFor(CHRONO_TYPE_QUESTIONS.size());
+
+  private static long allAnsweredMaskFor(int numberOfQuestions) {
+    if (numberOfQuestions * BITS_PER_RESPONSE > Long.SIZE) {
+      throw new IllegalStateException(
+          String.format("Cannot pack %d question responses into a long.", numberOfQuestions));
+    }
+    long allAnsweredMask = 0;
+    for (int i = 0; i < numberOfQuestions; i++) {
+      allAnsweredMask |= 1L << (i * BITS_PER_RESPONSE);
+    }
+    return allAnsweredMask;
+  }
+
   private static final String[] BREAKFAST_TIPS = new String[]{
       "In order to stay alert and improve performance we recommend eating a low-carb, lean, protein-rich, and choline-rich meal, such as:",
       "•\tEggs",
@@ -448,22 +514,59 @@ public class AstronautScheduleBuilder {
       "4.\tSurround yourself with familiar smells which remind you of your own home."
   };
 
+  private static final Activity WAKEUP_ACTIVITY = Activity.of("Wake Up");
+  private static final Activity BREAKFAST_ACTIVITY = Activity.of("Breakfast", BREAKFAST_TIPS);
+  private static final Activity WORK_BEFORE_LUNCH_ACTIVITY = Activity.of("Work Before Lunch");
+  private static final Activity FREE_TIME_BEFORE_LUNCH_ACTIVITY = Activity
+      .of("Free Time Before Lunch");
+  private static final Activity LUNCH_ACTIVITY = Activity.of("Lunch", LUNCH_TIPS);
   private static final Activity NAP_ACTIVITY = Activity.of("Nap");
+  private static final Activity WORK_AFTER_LUNCH_ACTIVITY = Activity.of("Work After Lunch");
+  private static final Activity FREE_TIME_AFTER_LUNCH_ACTIVITY = Activity
+      .of("Free Time After Lunch");
+  private static final Activity EXERCISE_ACTIVITY = Activity.of("Exercise");
+  private static final Activity DINNER_ACTIVITY = Activity.of("Dinner", DINNER_TIPS);
+  private static final Activity REST_ACTIVITY = Activity.of("Rest", REST_TIPS);
   private static final Activity SLEEP_ACTIVITY = Activity.of("Sleep");
 
+  // Binary schedule encodings refer to these activities by position, so only ever append to it.
+  public static final List<Activity> ACTIVITIES = List.of(
+      WAKEUP_ACTIVITY,
+      BREAKFAST_ACTIVITY,
+      WORK_BEFORE_LUNCH_ACTIVITY,
+      FREE_TIME_BEFORE_LUNCH_ACTIVITY,
+      LUNCH_ACTIVITY,
+      NAP_ACTIVITY,
+      WORK_AFTER_LUNCH_ACTIVITY,
+      FREE_TIME_AFTER_LUNCH_ACTIVITY,
+      EXERCISE_ACTIVITY,
+      DINNER_ACTIVITY,
+      REST_ACTIVITY,
+      SLEEP_ACTIVITY
+  );
+
   public static class ChronoTypeQuestion {
 
     private final String question;
-    private final int start;
-    private final int increment;
     private final List<String> possibleResponses;
+    private final Map<String, Integer> responseToValue;
 
     public ChronoTypeQuestion(String question, int start, int increment,
         String... possibleResponses) {
       this.question = question;
-      this.start = start;
-      this.increment = increment;
       this.possibleResponses = List.of(possibleResponses);
+
+      ImmutableMap.Builder<String, Integer> responseToValue = ImmutableMap.builder();
+      for (int i = 0; i < possibleResponses.length; i++) {
+        int responseValue = start + i * increment;
+        if (responseValue < 0 || RESPONSE_MASK <= responseValue) {
+          throw new IllegalArgumentException(
+              String.format("Response value %d does not fit in %d bits.", responseValue,
+                  BITS_PER_RESPONSE));
+        }
+        responseToValue.put(possibleResponses[i], responseValue);
+      }
+      this.responseToValue = responseToValue.build();
     }
 
     private static ChronoTypeQuestion withUniformIncrements(String question, int start,
@@ -0,0 +1,112 @@
+package alpha.medix.sleepy.model;
+
+import alpha.medix.sleepy.model.Schedule.Activity;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CrewActivityIndex {
+
+  // Most of the crew shares a handful of cached templates, so users are grouped by the template
+  // of their current schedule and each query only has to look at the distinct templates.
+  private final Map<String, ScheduleTemplate> usernameToTemplate;
+  private final Map<ScheduleTemplate, Set<String>> templateToUsernames;
+
+  public CrewActivityIndex() {
+    this.usernameToTemplate = new ConcurrentHashMap<>();
+    this.templateToUsernames = new ConcurrentHashMap<>();
+  }
+
+  public void update(String username, Schedule currentSchedule) {
+    ScheduleTemplate template = currentSchedule.getTemplate();
+    ScheduleTemplate previousTemplate = usernameToTemplate.put(username, template);
+    if (template == previousTemplate) {
+      return;
+    }
+    if (previousTemplate != null) {
+      templateToUsernames.computeIfPresent(previousTemplate, (key, usernames) -> {
+        usernames.remove(username);
+        return usernames.isEmpty() ? null : usernames;
+      });
+    }
+    templateToUsernames.compute(template, (key, usernames) -> {
+      if (usernames == null) {
+        usernames = ConcurrentHashMap.newKeySet();
+      }
+      usernames.add(username);
+      return usernames;
+    });
+  }
+
+  public Set<String> whoIsDoing(Activity activity, LocalTime time) {
+    return whoIsDoing(activity, ScheduleTemplate.minuteOfDay(time));
+  }
+
+  // Returns a snapshot, so later updates do not change a result that is being iterated.
+  public Set<String> whoIsDoing(Activity activity, int minuteOfDay) {
+    int activityId = ActivityDictionary.existingIdOf(activity);
+    if (activityId == ActivityDictionary.ABSENT_ID) {
+      return Set.of();
+    }
+    Set<String> matchingUsernames = new HashSet<>();
+    templateToUsernames.forEach((template, usernames) -> {
+      if (template.activityIdOf(template.slotIndexAt(minuteOfDay)) == activityId) {
+        matchingUsernames.addAll(usernames);
+      }
+    });
+    return Collections.unmodifiableSet(matchingUsernames);
+  }
+
+  public Map<Activity, Integer> occupancyAt(LocalTime time) {
+    return occupancyAt(ScheduleTemplate.minuteOfDay(time));
+  }
+
+  public Map<Activity, Integer> occupancyAt(int minuteOfDay) {
+    Map<Activity, Integer> activityToOccupancy = new HashMap<>();
+    templateToUsernames.forEach((template, usernames) -> activityToOccupancy
+        .merge(template.activityOf(template.slotIndexAt(minuteOfDay)), usernames.size(),
+            Integer::sum));
+    return activityToOccupancy;
+  }
+
+  public int[] occupancyOf(Activity activity) {
+    int activityId = ActivityDictionary.existingIdOf(activity);
+    if (activityId == ActivityDictionary.ABSENT_ID) {
+      return new int[ScheduleTemplate.MINUTES_PER_DAY];
+    }
+    int[] occupancyDeltas = new int[ScheduleTemplate.MINUTES_PER_DAY + 1];
+    templateToUsernames.forEach((template, usernames) -> {
+      int numberOfUsers = usernames.size();
+      for (int i = 0; i < template.size(); i++) {
+        if (template.activityIdOf(i) != activityId) {
+          continue;
+        }
+        int start = template.startMinuteOf(i);
+        int end = i + 1 < template.size() ? template.startMinuteOf(i + 1)
+            : template.startMinuteOf(0) + ScheduleTemplate.MINUTES_PER_DAY;
+        addOccupancy(occupancyDeltas, start, Math.min(end, ScheduleTemplate.MINUTES_PER_DAY),
+            numberOfUsers);
+        if (end > ScheduleTemplate.MINUTES_PER_DAY) {
+          addOccupancy(occupancyDeltas, 0, end - ScheduleTemplate.MINUTES_PER_DAY, numberOfUsers);
+        }
+      }
+    });
+
+    int[] occupancy = new int[ScheduleTemplate.MINUTES_PER_DAY];
+    int runningOccupancy = 0;
+    for (int minuteOfDay = 0; minuteOfDay < occupancy.length; minuteOfDay++) {
+      runningOccupancy += occupancyDeltas[minuteOfDay];
+      occupancy[minuteOfDay] = runningOccupancy;
+    }
+    return occupancy;
+  }
+
+  private static void addOccupancy(int[] occupancyDeltas, int start, int end, int numberOfUsers) {
+    occupancyDeltas[start] += numberOfUsers;
+    occupancyDeltas[end] -= numberOfUsers;
+  }
+}
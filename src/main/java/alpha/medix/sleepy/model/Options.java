@@ -1,5 +1,7 @@
 package alpha.medix.sleepy.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Options {
 
   public static final double VOLUME_MIN = 0.0d;
@@ -15,11 +17,14 @@ public class Options {
 
   private double volume;
   private String username;
+  // Bumped on every change, so autosave can tell whether the options need writing again.
+  private final AtomicLong version;
 
   public Options(Theme theme, double volume, String username) {
     this.theme = theme;
     this.volume = volume;
     this.username = username;
+    this.version = new AtomicLong();
   }
 
   public Options copy() {
@@ -38,14 +43,20 @@ public class Options {
     return username;
   }
 
+  public long getVersion() {
+    return version.get();
+  }
+
   public void setUsername(String username) {
     this.username = username;
+    version.incrementAndGet();
   }
 
   public void updateTo(Options that) {
     this.theme = that.theme;
     this.volume = that.volume;
     this.username = that.username;
+    version.incrementAndGet();
   }
 
   public enum Theme {
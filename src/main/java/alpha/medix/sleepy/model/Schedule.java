@@ -6,9 +6,6 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.List;
 import java.util.Objects;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 public class Schedule {
 
@@ -16,14 +13,20 @@ public class Schedule {
   private final Type type;
   private final long workDurationInMinutes;
   private final LocalDateTime timeOfCreation;
-  private final SortedMap<LocalTime, Activity> startTimeToActivity;
+  private final ScheduleTemplate template;
 
-  public Schedule(String username, Type type, long workDurationInMinutes) {
+  public Schedule(String username, Type type, long workDurationInMinutes,
+      ScheduleTemplate template) {
+    this(username, type, workDurationInMinutes, LocalDateTime.now(), template);
+  }
+
+  public Schedule(String username, Type type, long workDurationInMinutes,
+      LocalDateTime timeOfCreation, ScheduleTemplate template) {
     this.username = username;
     this.type = type;
     this.workDurationInMinutes = workDurationInMinutes;
-    this.timeOfCreation = LocalDateTime.now();
-    this.startTimeToActivity = new TreeMap<>();
+    this.timeOfCreation = timeOfCreation;
+    this.template = template;
   }
 
   public String getUsername() {
@@ -38,13 +41,32 @@ public class Schedule {
     return type;
   }
 
-  public void addActivity(LocalTime startTime, Activity activity) {
-    startTimeToActivity.put(startTime, activity);
+  public LocalDateTime getTimeOfCreation() {
+    return timeOfCreation;
+  }
+
+  public ScheduleTemplate getTemplate() {
+    return template;
   }
 
   public List<Slot> getSlots() {
-    return startTimeToActivity.entrySet().stream()
-        .map(entry -> new Slot(entry.getKey(), entry.getValue())).collect(Collectors.toList());
+    return template.getSlots();
+  }
+
+  public Activity activityAt(LocalTime time) {
+    return template.activityAt(time);
+  }
+
+  public long contentHash() {
+    return 31 * (31 * template.getContentHash() + type.ordinal()) + workDurationInMinutes;
+  }
+
+  public boolean hasSameContentAs(Schedule that) {
+    // Templates are interned, so equal timetables are almost always the same instance and the
+    // structural comparison is only a fallback.
+    return this.type == that.type
+        && this.workDurationInMinutes == that.workDurationInMinutes
+        && this.template.equals(that.template);
   }
 
   @Override
@@ -0,0 +1,63 @@
+package alpha.medix.sleepy.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// An immutable view of a window of one user's schedules. Appending writes into spare room at the
+// end of the shared array and returns a wider view, so a history is only copied once it runs out
+// of room rather than on every append. Older views never look past their own end, so they never
+// see what is written there.
+class ScheduleHistory extends AbstractList<Schedule> implements RandomAccess {
+
+  private static final ScheduleHistory EMPTY = new ScheduleHistory(new Schedule[0], 0, 0);
+  private static final int MINIMUM_CAPACITY = 4;
+
+  private final Schedule[] schedules;
+  private final int start;
+  private final int end;
+
+  private ScheduleHistory(Schedule[] schedules, int start, int end) {
+    this.schedules = schedules;
+    this.start = start;
+    this.end = end;
+  }
+
+  static ScheduleHistory empty() {
+    return EMPTY;
+  }
+
+  @Override
+  public Schedule get(int index) {
+    Objects.checkIndex(index, size());
+    return schedules[start + index];
+  }
+
+  @Override
+  public int size() {
+    return end - start;
+  }
+
+  // Only the newest history of a user may be appended to, and only while its entry is locked,
+  // since the new schedule is written into the array it shares with older views.
+  ScheduleHistory append(Schedule schedule, int maximumSize) {
+    int newStart = start + Math.max(0, size() + 1 - maximumSize);
+    if (end < schedules.length) {
+      schedules[end] = schedule;
+      return new ScheduleHistory(schedules, newStart, end + 1);
+    }
+    // Twice the room that is needed, so the next copy is at least as many appends away as there
+    // are schedules being copied.
+    int newSize = end - newStart + 1;
+    Schedule[] newSchedules = new Schedule[Math.max(MINIMUM_CAPACITY, 2 * newSize)];
+    System.arraycopy(schedules, newStart, newSchedules, 0, newSize - 1);
+    newSchedules[newSize - 1] = schedule;
+    return new ScheduleHistory(newSchedules, 0, newSize);
+  }
+
+  // The schedules that appending to this history with the given limit pushes out.
+  List<Schedule> evictedBy(int maximumSize) {
+    return List.copyOf(subList(0, Math.max(0, size() + 1 - maximumSize)));
+  }
+}
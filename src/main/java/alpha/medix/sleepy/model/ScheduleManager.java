@@ -1,27 +1,109 @@
 package alpha.medix.sleepy.model;
 
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 public class ScheduleManager {
-  private final Map<String, List<Schedule>> usernameToSchedules;
+
+  public static final int UNBOUNDED_HISTORY = Integer.MAX_VALUE;
+
+  // Each user's history is an immutable list that is swapped atomically on append, so readers
+  // always get a consistent snapshot without taking a lock. Successive histories share their
+  // backing array, so an append does not copy the whole history.
+  private final Map<String, ScheduleHistory> usernameToSchedules;
+  private final CrewActivityIndex crewActivityIndex;
+  private final int maximumSchedulesPerUser;
+  private final BiConsumer<String, List<Schedule>> evictionHandler;
+  private final List<ScheduleListener> scheduleListeners;
+  private final AtomicLong version;
 
   public ScheduleManager() {
-    this.usernameToSchedules = new HashMap<>();
+    this(UNBOUNDED_HISTORY, (username, evictedSchedules) -> {
+    });
+  }
+
+  public ScheduleManager(int maximumSchedulesPerUser,
+      BiConsumer<String, List<Schedule>> evictionHandler) {
+    if (maximumSchedulesPerUser < 1) {
+      throw new IllegalArgumentException("At least one schedule per user must be kept.");
+    }
+    this.usernameToSchedules = new ConcurrentHashMap<>();
+    this.crewActivityIndex = new CrewActivityIndex();
+    this.maximumSchedulesPerUser = maximumSchedulesPerUser;
+    this.evictionHandler = evictionHandler;
+    this.scheduleListeners = new CopyOnWriteArrayList<>();
+    this.version = new AtomicLong();
   }
 
   public List<Schedule> getSchedulesFor(String username) {
-    return usernameToSchedules.get(username);
+    return usernameToSchedules.getOrDefault(username, ScheduleHistory.empty());
+  }
+
+  public CrewActivityIndex getCrewActivityIndex() {
+    return crewActivityIndex;
+  }
+
+  public int getMaximumSchedulesPerUser() {
+    return maximumSchedulesPerUser;
+  }
+
+  // Bumped on every added schedule, so autosave can tell whether schedules need writing again.
+  public long getVersion() {
+    return version.get();
+  }
+
+  public void addScheduleListener(ScheduleListener scheduleListener) {
+    scheduleListeners.add(scheduleListener);
+  }
+
+  public void removeScheduleListener(ScheduleListener scheduleListener) {
+    scheduleListeners.remove(scheduleListener);
   }
 
   public void add(String username, Schedule schedule) {
-    List<Schedule> schedules = getSchedulesFor(username);
-    if (schedules == null) {
-      schedules = new LinkedList<>();
-      usernameToSchedules.put(username, schedules);
+    List<Schedule> evictedSchedules = append(username, schedule);
+    if (!evictedSchedules.isEmpty()) {
+      evictionHandler.accept(username, evictedSchedules);
     }
-    schedules.add(schedule);
+  }
+
+  // Adds a schedule that is already persisted, such as one replayed at startup. Schedules it
+  // pushes out of memory are not handed to the eviction handler, since whoever persisted them
+  // is responsible for archiving them.
+  public void restore(String username, Schedule schedule) {
+    append(username, schedule);
+  }
+
+  private List<Schedule> append(String username, Schedule schedule) {
+    AtomicReference<List<Schedule>> evictedSchedules = new AtomicReference<>(List.of());
+    usernameToSchedules.compute(username, (key, schedules) -> {
+      if (schedules == null) {
+        schedules = ScheduleHistory.empty();
+      }
+      evictedSchedules.set(schedules.evictedBy(maximumSchedulesPerUser));
+      crewActivityIndex.update(username, schedule);
+      // Listeners are notified while the user's entry is locked, so they observe each user's
+      // schedules in the order in which they were added.
+      scheduleListeners.forEach(scheduleListener -> scheduleListener
+          .onScheduleAdded(username, schedule, evictedSchedules.get()));
+      // Bumped after listeners are notified but before the new history is published. So if a
+      // schedule reached a listener registered after the version was read, and is also in a
+      // history read afterwards, the version will have moved.
+      version.incrementAndGet();
+      return schedules.append(schedule, maximumSchedulesPerUser);
+    });
+    return evictedSchedules.get();
+  }
+
+  public interface ScheduleListener {
+
+    // Called while the user's history is being updated, so implementations must not block or
+    // call back into the ScheduleManager.
+    void onScheduleAdded(String username, Schedule addedSchedule, List<Schedule> evictedSchedules);
   }
 }
@@ -0,0 +1,155 @@
+package alpha.medix.sleepy.model;
+
+import alpha.medix.sleepy.model.Schedule.Activity;
+import alpha.medix.sleepy.model.Schedule.Slot;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class ScheduleTemplate {
+
+  public static final int MINUTES_PER_DAY = (int) ChronoUnit.DAYS.getDuration().toMinutes();
+
+  // Every template is interned when it is built, so schedules with the same timetable share a
+  // single body no matter whether they came from the template cache, the journal or the archive.
+  private static final Interner<ScheduleTemplate> TEMPLATE_INTERNER = Interners.newWeakInterner();
+
+  private final short[] startMinutes;
+  private final int[] activityIds;
+  private final long contentHash;
+  private final List<Slot> slots;
+
+  private ScheduleTemplate(short[] startMinutes, int[] activityIds) {
+    this.startMinutes = startMinutes;
+    this.activityIds = activityIds;
+    this.contentHash = contentHashOf(startMinutes, activityIds);
+    this.slots = new SlotView();
+  }
+
+  public int size() {
+    return startMinutes.length;
+  }
+
+  public int startMinuteOf(int slotIndex) {
+    return startMinutes[slotIndex];
+  }
+
+  public int activityIdOf(int slotIndex) {
+    return activityIds[slotIndex];
+  }
+
+  public Activity activityOf(int slotIndex) {
+    return ActivityDictionary.activityOf(activityIds[slotIndex]);
+  }
+
+  public int slotIndexAt(int minuteOfDay) {
+    int slotIndex = Arrays.binarySearch(startMinutes, (short) minuteOfDay);
+    if (slotIndex < 0) {
+      slotIndex = -slotIndex - 2;
+    }
+    // Before the first start time of the day, the last activity of the previous day still runs.
+    return slotIndex < 0 ? startMinutes.length - 1 : slotIndex;
+  }
+
+  public Activity activityAt(LocalTime time) {
+    return activityOf(slotIndexAt(minuteOfDay(time)));
+  }
+
+  public List<Slot> getSlots() {
+    return slots;
+  }
+
+  public long getContentHash() {
+    return contentHash;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(contentHash);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    } else if (obj instanceof ScheduleTemplate) {
+      ScheduleTemplate that = (ScheduleTemplate) obj;
+      return this.contentHash == that.contentHash
+          && Arrays.equals(this.startMinutes, that.startMinutes)
+          && Arrays.equals(this.activityIds, that.activityIds);
+    }
+    return false;
+  }
+
+  public static int minuteOfDay(LocalTime time) {
+    return time.getHour() * 60 + time.getMinute();
+  }
+
+  private static long contentHashOf(short[] startMinutes, int[] activityIds) {
+    // Activities are hashed by content rather than by dictionary id, since ids depend on the
+    // order in which activities were first seen by this process.
+    long hash = startMinutes.length;
+    for (int slotIndex = 0; slotIndex < startMinutes.length; slotIndex++) {
+      hash = 31 * hash + startMinutes[slotIndex];
+      hash = 31 * hash + ActivityDictionary.activityOf(activityIds[slotIndex]).hashCode();
+    }
+    // Finalisation step of MurmurHash3, which spreads the bits of the polynomial hash.
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb53e87a94fe5L;
+    return hash ^ (hash >>> 33);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private class SlotView extends AbstractList<Slot> implements RandomAccess {
+
+    @Override
+    public Slot get(int slotIndex) {
+      return new Slot(LocalTime.of(startMinutes[slotIndex] / 60, startMinutes[slotIndex] % 60),
+          activityOf(slotIndex));
+    }
+
+    @Override
+    public int size() {
+      return startMinutes.length;
+    }
+  }
+
+  public static class Builder {
+
+    private final SortedMap<Integer, Activity> startMinuteToActivity;
+
+    private Builder() {
+      this.startMinuteToActivity = new TreeMap<>();
+    }
+
+    public Builder addActivity(LocalTime startTime, Activity activity) {
+      startMinuteToActivity.put(minuteOfDay(startTime), activity);
+      return this;
+    }
+
+    public ScheduleTemplate build() {
+      short[] startMinutes = new short[startMinuteToActivity.size()];
+      int[] activityIds = new int[startMinuteToActivity.size()];
+      int slotIndex = 0;
+      for (Map.Entry<Integer, Activity> entry : startMinuteToActivity.entrySet()) {
+        startMinutes[slotIndex] = entry.getKey().shortValue();
+        activityIds[slotIndex] = ActivityDictionary.idOf(entry.getValue());
+        slotIndex++;
+      }
+      return TEMPLATE_INTERNER.intern(new ScheduleTemplate(startMinutes, activityIds));
+    }
+  }
+}
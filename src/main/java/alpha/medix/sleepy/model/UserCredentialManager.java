@@ -1,18 +1,41 @@
 package alpha.medix.sleepy.model;
 
-import alpha.medix.sleepy.utils.HashingUtils;
-import java.util.HashMap;
+import alpha.medix.sleepy.utils.PasswordHasher;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public class UserCredentialManager {
 
-  private final Map<String, String> usernameToHashedPassword;
+  // Bulk reloads build a complete map and swap it in, so readers see either the old credentials
+  // or the new ones but never a half-populated map.
+  private volatile ConcurrentHashMap<String, String> usernameToHashedPassword;
+  private final PasswordHasher passwordHasher;
+  private final BiConsumer<String, String> changeHandler;
+  private final AtomicLong version;
 
   public UserCredentialManager() {
-    usernameToHashedPassword = new HashMap<>();
+    this(new PasswordHasher(), (username, hashedPassword) -> {
+    });
+  }
+
+  // The change handler is given every registration and rehashed password, but not bulk reloads,
+  // which come from storage in the first place.
+  public UserCredentialManager(PasswordHasher passwordHasher,
+      BiConsumer<String, String> changeHandler) {
+    this.usernameToHashedPassword = new ConcurrentHashMap<>();
+    this.passwordHasher = passwordHasher;
+    this.changeHandler = changeHandler;
+    this.version = new AtomicLong();
+  }
+
+  // Bumped on every change, so autosave can tell whether the credentials need writing again.
+  public long getVersion() {
+    return version.get();
   }
 
   public List<UserCredentials> toList() {
@@ -28,26 +51,79 @@ public class UserCredentialManager {
   }
 
   public void updateWith(List<UserCredentials> userCredentialsList) {
-    usernameToHashedPassword.clear();
-    userCredentialsList.forEach(userCredentials -> usernameToHashedPassword
+    updateWith(userCredentialsList.iterator());
+  }
+
+  public void updateWith(Iterator<UserCredentials> userCredentialsIterator) {
+    ConcurrentHashMap<String, String> updatedUsernameToHashedPassword = new ConcurrentHashMap<>();
+    userCredentialsIterator.forEachRemaining(userCredentials -> updatedUsernameToHashedPassword
         .put(userCredentials.getUsername(), userCredentials.getHashedPassword()));
+    usernameToHashedPassword = updatedUsernameToHashedPassword;
+    version.incrementAndGet();
+  }
+
+  public int size() {
+    return usernameToHashedPassword.size();
+  }
+
+  public boolean containsUser(String username) {
+    return usernameToHashedPassword.containsKey(username);
   }
 
   private String hash(String password) {
-    return HashingUtils.sha256(password);
+    return passwordHasher.hash(password);
   }
 
   public boolean registerNewUser(String username, String password) {
     if (usernameToHashedPassword.containsKey(username)) {
       return false;
     }
+    // Passwords are hashed up front, so another registration for the same username may have
+    // completed in the meantime and putIfAbsent decides which one wins.
     String hashedPassword = hash(password);
-    usernameToHashedPassword.put(username, hashedPassword);
-    return true;
+    return registerHashedUser(username, hashedPassword);
+  }
+
+  public List<String> registerHashedUsers(List<UserCredentials> userCredentialsList) {
+    List<String> existingUsernames = new ArrayList<>();
+    userCredentialsList.forEach(userCredentials -> {
+      if (!registerHashedUser(userCredentials.getUsername(),
+          userCredentials.getHashedPassword())) {
+        existingUsernames.add(userCredentials.getUsername());
+      }
+    });
+    return existingUsernames;
+  }
+
+  private boolean registerHashedUser(String username, String hashedPassword) {
+    while (true) {
+      ConcurrentHashMap<String, String> currentUsernameToHashedPassword = usernameToHashedPassword;
+      if (currentUsernameToHashedPassword.putIfAbsent(username, hashedPassword) != null) {
+        return false;
+      }
+      // A registration that raced with a bulk reload is repeated against the reloaded map.
+      if (currentUsernameToHashedPassword == usernameToHashedPassword) {
+        version.incrementAndGet();
+        changeHandler.accept(username, hashedPassword);
+        return true;
+      }
+    }
   }
 
   public boolean verifyExistingUser(String username, String password) {
-    String hashedPassword = hash(password);
-    return Objects.equals(hashedPassword, usernameToHashedPassword.get(username));
+    // An unknown user has no hash, which the hasher still spends a full verification on.
+    String hashedPassword = usernameToHashedPassword.get(username);
+    if (!passwordHasher.verify(password, hashedPassword)) {
+      return false;
+    }
+    // Hashes in an older format or with a different cost are upgraded once the password is known.
+    if (passwordHasher.needsRehash(hashedPassword)) {
+      String rehashedPassword = hash(password);
+      if (usernameToHashedPassword.replace(username, hashedPassword, rehashedPassword)) {
+        version.incrementAndGet();
+        changeHandler.accept(username, rehashedPassword);
+      }
+    }
+    return true;
   }
 }
@@ -0,0 +1,110 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.model.UserCredentialManager;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class AuthenticationService {
+
+  private static final int MAXIMUM_PENDING_REQUESTS = 64;
+  private static final long WORKER_KEEP_ALIVE_IN_SECONDS = 30;
+
+  private final UserCredentialManager userCredentialManager;
+  private final ThreadPoolExecutor authenticationExecutor;
+  private final Map<String, PendingRequest> requestKeyToPendingRequest;
+
+  public AuthenticationService(UserCredentialManager userCredentialManager) {
+    this.userCredentialManager = userCredentialManager;
+    // Password hashing is deliberately slow, so at most half of the cores are spent on it and a
+    // burst of attempts queues up instead of starving the rest of the launcher.
+    int numberOfWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    AtomicInteger workerCount = new AtomicInteger();
+    this.authenticationExecutor = new ThreadPoolExecutor(numberOfWorkers, numberOfWorkers,
+        WORKER_KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(MAXIMUM_PENDING_REQUESTS), runnable -> {
+      Thread thread = new Thread(runnable, "authentication-worker-" + workerCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.authenticationExecutor.allowCoreThreadTimeOut(true);
+    this.requestKeyToPendingRequest = new ConcurrentHashMap<>();
+  }
+
+  public CompletableFuture<Boolean> login(String username, String password) {
+    return submit("login:" + username, password,
+        () -> userCredentialManager.verifyExistingUser(username, password));
+  }
+
+  public CompletableFuture<Boolean> register(String username, String password) {
+    return submit("register:" + username, password,
+        () -> userCredentialManager.registerNewUser(username, password));
+  }
+
+  public void shutdown() {
+    authenticationExecutor.shutdownNow();
+  }
+
+  private CompletableFuture<Boolean> submit(String requestKey, String password,
+      Supplier<Boolean> request) {
+    // A request identical to one that is already being processed shares the in-flight result
+    // rather than hashing the password a second time. Requests are keyed on the action and
+    // username alone, so no fast digest of the password is ever held, and the password itself
+    // is compared before sharing, so a wrong password is never handed the answer for the right
+    // one. A request with a different password is simply processed on its own.
+    PendingRequest newRequest = new PendingRequest(password);
+    PendingRequest existingRequest = requestKeyToPendingRequest
+        .putIfAbsent(requestKey, newRequest);
+    if (existingRequest != null) {
+      if (existingRequest.hasPassword(password)) {
+        return existingRequest.result;
+      }
+      return execute(request, new CompletableFuture<>());
+    }
+    newRequest.result.whenComplete(
+        (ignored, e) -> requestKeyToPendingRequest.remove(requestKey, newRequest));
+    return execute(request, newRequest.result);
+  }
+
+  private CompletableFuture<Boolean> execute(Supplier<Boolean> request,
+      CompletableFuture<Boolean> newResult) {
+    try {
+      authenticationExecutor.execute(() -> {
+        try {
+          newResult.complete(request.get());
+        } catch (RuntimeException e) {
+          newResult.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      newResult.completeExceptionally(
+          new RejectedExecutionException("Too many authentication attempts are in progress", e));
+    }
+    return newResult;
+  }
+
+  private static class PendingRequest {
+
+    private final byte[] password;
+    private final CompletableFuture<Boolean> result;
+
+    private PendingRequest(String password) {
+      this.password = password.getBytes(StandardCharsets.UTF_8);
+      this.result = new CompletableFuture<>();
+    }
+
+    private boolean hasPassword(String password) {
+      // Compared in constant time, so how long a coalescing check takes says nothing about how
+      // much of the password matched.
+      return MessageDigest.isEqual(this.password, password.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
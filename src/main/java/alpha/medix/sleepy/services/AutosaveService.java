@@ -0,0 +1,169 @@
+package alpha.medix.sleepy.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class AutosaveService {
+
+  private static final long SAVE_TIMEOUT_IN_SECONDS = 30;
+
+  private final long intervalInSeconds;
+  private final BiConsumer<String, Throwable> failureHandler;
+  private final List<AutosaveTarget> targets;
+  private final ScheduledExecutorService scheduler;
+
+  public AutosaveService(long intervalInSeconds, BiConsumer<String, Throwable> failureHandler) {
+    this.intervalInSeconds = intervalInSeconds;
+    this.failureHandler = failureHandler;
+    this.targets = new CopyOnWriteArrayList<>();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "autosave");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // The current version counts as saved, so state that was just loaded is not written back.
+  public void register(String name, LongSupplier versionSupplier,
+      Supplier<CompletableFuture<Void>> saver) {
+    targets.add(new AutosaveTarget(name, versionSupplier, saver));
+  }
+
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::saveChangedTargets, intervalInSeconds,
+        intervalInSeconds, TimeUnit.SECONDS);
+  }
+
+  public void saveNow() {
+    scheduler.execute(this::saveChangedTargets);
+  }
+
+  public List<AutosaveStatistics> getStatistics() {
+    return targets.stream()
+        .map(AutosaveTarget::statistics)
+        .collect(Collectors.toList());
+  }
+
+  // Runs one last pass over every target and returns those that still failed to save.
+  public List<AutosaveStatistics> shutdown() throws InterruptedException {
+    if (!scheduler.isShutdown()) {
+      scheduler.execute(this::saveChangedTargets);
+      scheduler.shutdown();
+    }
+    scheduler.awaitTermination(SAVE_TIMEOUT_IN_SECONDS * (targets.size() + 1), TimeUnit.SECONDS);
+    return targets.stream()
+        .filter(AutosaveTarget::isDirty)
+        .map(AutosaveTarget::statistics)
+        .collect(Collectors.toList());
+  }
+
+  private void saveChangedTargets() {
+    targets.forEach(target -> {
+      try {
+        target.saveIfChanged();
+      } catch (Exception e) {
+        failureHandler.accept(target.name, e);
+      }
+    });
+  }
+
+  private static class AutosaveTarget {
+
+    private final String name;
+    private final LongSupplier versionSupplier;
+    private final Supplier<CompletableFuture<Void>> saver;
+    private volatile long savedVersion;
+    private volatile int saveCount;
+    private volatile int failureCount;
+    private volatile Duration lastSaveLatency;
+
+    private AutosaveTarget(String name, LongSupplier versionSupplier,
+        Supplier<CompletableFuture<Void>> saver) {
+      this.name = name;
+      this.versionSupplier = versionSupplier;
+      this.saver = saver;
+      this.savedVersion = versionSupplier.getAsLong();
+      this.lastSaveLatency = Duration.ZERO;
+    }
+
+    private boolean isDirty() {
+      return versionSupplier.getAsLong() != savedVersion;
+    }
+
+    // Only ever called from the autosave thread.
+    private void saveIfChanged() throws Exception {
+      // The version is read before the state is saved, so a change made during the save leaves
+      // the target dirty for the next pass.
+      long version = versionSupplier.getAsLong();
+      if (version == savedVersion) {
+        return;
+      }
+      long startTime = System.nanoTime();
+      try {
+        saver.get().get(SAVE_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        failureCount++;
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      } catch (TimeoutException | RuntimeException e) {
+        failureCount++;
+        throw e;
+      }
+      lastSaveLatency = Duration.ofNanos(System.nanoTime() - startTime);
+      savedVersion = version;
+      saveCount++;
+    }
+
+    private AutosaveStatistics statistics() {
+      return new AutosaveStatistics(name, saveCount, failureCount, lastSaveLatency);
+    }
+  }
+
+  public static class AutosaveStatistics {
+
+    private final String name;
+    private final int saveCount;
+    private final int failureCount;
+    private final Duration lastSaveLatency;
+
+    private AutosaveStatistics(String name, int saveCount, int failureCount,
+        Duration lastSaveLatency) {
+      this.name = name;
+      this.saveCount = saveCount;
+      this.failureCount = failureCount;
+      this.lastSaveLatency = lastSaveLatency;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getSaveCount() {
+      return saveCount;
+    }
+
+    public int getFailureCount() {
+      return failureCount;
+    }
+
+    public Duration getLastSaveLatency() {
+      return lastSaveLatency;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: saved %d times, failed %d times, last save took %d ms", name,
+          saveCount, failureCount, lastSaveLatency.toMillis());
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package alpha.medix.sleepy.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+public class ConsoleDispatchService {
+
+  private final Consumer<List<String>> messageRenderer;
+  private final Queue<PendingMessage> pendingMessages;
+  private final AtomicBoolean isDrainScheduled;
+  private final LongAdder enqueuedMessageCount;
+  private final LongAdder renderedMessageCount;
+
+  // The renderer is called on the JavaFX application thread with every message that arrived
+  // since the last time it was called, in the order in which they were enqueued.
+  public ConsoleDispatchService(Consumer<List<String>> messageRenderer) {
+    this.messageRenderer = messageRenderer;
+    this.pendingMessages = new ConcurrentLinkedQueue<>();
+    this.isDrainScheduled = new AtomicBoolean(false);
+    this.enqueuedMessageCount = new LongAdder();
+    this.renderedMessageCount = new LongAdder();
+  }
+
+  // Safe to call from any thread. The message is only formatted once it is about to be shown, so
+  // the arguments should not be changed afterwards.
+  public void enqueue(String format, Object... arguments) {
+    pendingMessages.add(new PendingMessage(format, arguments));
+    enqueuedMessageCount.increment();
+    // However many messages arrive before the next drain, only one drain is ever scheduled.
+    if (isDrainScheduled.compareAndSet(false, true)) {
+      Platform.runLater(this::drain);
+    }
+  }
+
+  public long getEnqueuedMessageCount() {
+    return enqueuedMessageCount.sum();
+  }
+
+  public long getRenderedMessageCount() {
+    return renderedMessageCount.sum();
+  }
+
+  private void drain() {
+    // Cleared before draining, so a message enqueued part way through schedules another drain
+    // rather than being left behind.
+    isDrainScheduled.set(false);
+    List<String> messages = new ArrayList<>();
+    PendingMessage pendingMessage;
+    while ((pendingMessage = pendingMessages.poll()) != null) {
+      messages.add(pendingMessage.format());
+    }
+    if (!messages.isEmpty()) {
+      messageRenderer.accept(messages);
+      renderedMessageCount.add(messages.size());
+    }
+  }
+
+  private static class PendingMessage {
+
+    private final String format;
+    private final Object[] arguments;
+
+    private PendingMessage(String format, Object[] arguments) {
+      this.format = format;
+      this.arguments = arguments;
+    }
+
+    private String format() {
+      return String.format(format, arguments);
+    }
+  }
+}
@@ -4,12 +4,13 @@ import alpha.medix.sleepy.model.Options;
 import alpha.medix.sleepy.model.Options.Field;
 import alpha.medix.sleepy.model.Options.Theme;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 public class OptionsService {
@@ -21,15 +22,18 @@ public class OptionsService {
       .build();
 
   private final String optionsPath;
+  private final PersistenceService persistenceService;
 
-  public OptionsService(String configPath) {
+  public OptionsService(String configPath, PersistenceService persistenceService) {
     this.optionsPath = configPath + "/options.properties";
+    this.persistenceService = persistenceService;
   }
 
   public Options loadOptionsFromDisk() throws IOException {
-    InputStream inputStream = new FileInputStream(optionsPath);
     Properties properties = new Properties();
-    properties.load(inputStream);
+    try (InputStream inputStream = new FileInputStream(optionsPath)) {
+      properties.load(inputStream);
+    }
 
     double volume = parseVolumeFrom(properties);
     Theme theme = parseThemeFrom(properties);
@@ -90,20 +94,28 @@ public class OptionsService {
     return DEFAULT_OPTIONS.copy();
   }
 
-  public void writeOptionsFileToDisk(Options options) throws IOException {
-    OutputStream outputStream = new FileOutputStream(optionsPath);
+  public CompletableFuture<Void> writeOptionsFileToDisk(Options options) {
+    // The properties are taken now, since the options may change before the writer gets to them.
     Properties properties = new Properties();
 
     properties.setProperty(Field.VOLUME.name(), options.getVolume().toString());
     properties.setProperty(Field.THEME.name(), options.getTheme().toString());
     properties.setProperty(Field.USERNAME.name(), options.getUsername());
 
-    properties.store(outputStream, "Sleepy Medix Scheduler options file.");
+    return persistenceService.write(Paths.get(optionsPath), outputStream -> properties
+        .store(outputStream, "Sleepy Medix Scheduler options file."));
   }
 
   public Options writeNewOptionsFileToDisk() throws IOException {
     Options defaultOptions = loadDefaultOptions();
-    writeOptionsFileToDisk(defaultOptions);
+    try {
+      writeOptionsFileToDisk(defaultOptions).get();
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing the options file.", e);
+    }
     return defaultOptions;
   }
 }
@@ -1,31 +1,434 @@
 package alpha.medix.sleepy.services;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import javafx.concurrent.Task;
+import javafx.application.Platform;
 
 public class ParallelExecutionService {
 
-  private final Supplier<Executor> executorFactory = () -> Executors
-      .newCachedThreadPool(runnable -> {
-        Thread thread = new Thread(runnable);
+  private static final int MAXIMUM_PENDING_COMPUTE_TASKS = 32;
+  // Blocking tasks are cheap to hold back, so a burst of persistence work, such as a bulk import,
+  // is queued rather than rejected.
+  private static final int MAXIMUM_PENDING_IO_TASKS = 16_384;
+  private static final int MAXIMUM_RUNNING_PLATFORM_IO_TASKS_PER_CORE = 4;
+  // File access pins a virtual thread to its carrier, which the JDK makes up for with extra
+  // carriers up to a limit of its own, so running more at once than this gains nothing.
+  private static final int MAXIMUM_RUNNING_VIRTUAL_IO_TASKS = 256;
+  private static final long WORKER_KEEP_ALIVE_IN_SECONDS = 30;
+  private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 5;
+  private static final String VIRTUAL_THREAD_EXECUTOR_FACTORY_NAME =
+      "alpha.medix.sleepy.services.VirtualThreadExecutorFactory";
+  private static final Supplier<ExecutorService> VIRTUAL_THREAD_EXECUTOR_FACTORY =
+      findVirtualThreadExecutorFactory();
+
+  public enum ExecutionMode {
+    PLATFORM_THREADS,
+    // Only available in builds made with the java21 profile.
+    VIRTUAL_THREADS;
+
+    public static ExecutionMode bestAvailable() {
+      return VIRTUAL_THREAD_EXECUTOR_FACTORY != null ? VIRTUAL_THREADS : PLATFORM_THREADS;
+    }
+  }
+
+  // Interactive tasks are started ahead of any background tasks waiting in the same lane.
+  public enum Priority {
+    INTERACTIVE,
+    BACKGROUND;
+  }
+
+  private final ExecutionMode executionMode;
+  private final ForkJoinPool computePool;
+  private final ExecutorService ioExecutor;
+  private final Lane computeLane;
+  private final Lane ioLane;
+  private final AtomicLong submissionCount;
+  private final LongAdder completedTaskCount;
+  private final LongAdder rejectedTaskCount;
+  private final LongAdder totalWaitTimeInNanos;
+  private final LongAdder totalRunTimeInNanos;
+  private volatile boolean isShutdown;
+
+  public ParallelExecutionService() {
+    this(ExecutionMode.bestAvailable());
+  }
+
+  public ParallelExecutionService(ExecutionMode executionMode) {
+    this.executionMode = executionMode;
+    this.submissionCount = new AtomicLong();
+    this.completedTaskCount = new LongAdder();
+    this.rejectedTaskCount = new LongAdder();
+    this.totalWaitTimeInNanos = new LongAdder();
+    this.totalRunTimeInNanos = new LongAdder();
+
+    // CPU-bound work runs on a work-stealing pool with one worker per core, so that parallel
+    // streams forked from a task spread across every core.
+    int numberOfCores = Runtime.getRuntime().availableProcessors();
+    AtomicInteger computeWorkerCount = new AtomicInteger();
+    this.computePool = new ForkJoinPool(numberOfCores, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("compute-worker-" + computeWorkerCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+    this.computeLane = new Lane(computePool, numberOfCores, MAXIMUM_PENDING_COMPUTE_TASKS);
+
+    // Blocking work gets its own elastic pool, so a burst of disk access never holds the compute
+    // workers, and idle I/O threads are let go.
+    if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+      this.ioExecutor = newVirtualThreadPerTaskExecutor();
+      this.ioLane = new Lane(ioExecutor, MAXIMUM_RUNNING_VIRTUAL_IO_TASKS,
+          MAXIMUM_PENDING_IO_TASKS);
+    } else {
+      int numberOfIoWorkers = MAXIMUM_RUNNING_PLATFORM_IO_TASKS_PER_CORE * numberOfCores;
+      AtomicInteger ioWorkerCount = new AtomicInteger();
+      ThreadPoolExecutor ioThreadPoolExecutor = new ThreadPoolExecutor(numberOfIoWorkers,
+          numberOfIoWorkers, WORKER_KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "io-worker-" + ioWorkerCount.incrementAndGet());
         thread.setDaemon(true);
         return thread;
       });
+      ioThreadPoolExecutor.allowCoreThreadTimeOut(true);
+      this.ioExecutor = ioThreadPoolExecutor;
+      this.ioLane = new Lane(ioExecutor, numberOfIoWorkers, MAXIMUM_PENDING_IO_TASKS);
+    }
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  // A rejected task, because its lane is full or the service has shut down, comes back as a
+  // future that has already failed with a RejectedExecutionException.
+  public <T> CompletableFuture<T> submit(Callable<T> work) {
+    return submit(work, Priority.BACKGROUND);
+  }
+
+  public <T> CompletableFuture<T> submit(Callable<T> work, Priority priority) {
+    return submitTo(computeLane, priority, work);
+  }
+
+  public <T> CompletableFuture<T> submit(Callable<T> work, long timeout, TimeUnit unit) {
+    return submit(work).orTimeout(timeout, unit);
+  }
+
+  public CompletableFuture<Void> submit(Runnable work) {
+    return submit(() -> {
+      work.run();
+      return null;
+    });
+  }
+
+  // For work that spends most of its time waiting on the disk rather than on the CPU.
+  public <T> CompletableFuture<T> submitBlocking(Callable<T> work) {
+    return submitBlocking(work, Priority.BACKGROUND);
+  }
+
+  public <T> CompletableFuture<T> submitBlocking(Callable<T> work, Priority priority) {
+    return submitTo(ioLane, priority, work);
+  }
+
+  public CompletableFuture<Void> submitBlocking(Runnable work, Priority priority) {
+    return submitBlocking(() -> {
+      work.run();
+      return null;
+    }, priority);
+  }
+
+  // Both handlers are called on the JavaFX application thread. Work started from the UI has
+  // someone waiting on it, so it is always interactive.
+  public <T> CompletableFuture<T> executeInParallel(Callable<T> heavyWork,
+      Consumer<T> workHandler, Consumer<Throwable> failureHandler) {
+    return handleOnFxThread(submit(heavyWork, Priority.INTERACTIVE), workHandler,
+        failureHandler);
+  }
+
+  public <T> CompletableFuture<T> executeBlockingInParallel(Callable<T> blockingWork,
+      Consumer<T> workHandler, Consumer<Throwable> failureHandler) {
+    return handleOnFxThread(submitBlocking(blockingWork, Priority.INTERACTIVE), workHandler,
+        failureHandler);
+  }
+
+  private <T> CompletableFuture<T> submitTo(Lane lane, Priority priority, Callable<T> work) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    long submissionTime = System.nanoTime();
+    FutureTask<Void> timedTask = new FutureTask<>(() -> {
+      long startTime = System.nanoTime();
+      totalWaitTimeInNanos.add(startTime - submissionTime);
+      try {
+        result.complete(work.call());
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+      } finally {
+        totalRunTimeInNanos.add(System.nanoTime() - startTime);
+        completedTaskCount.increment();
+      }
+    }, null);
+    PrioritizedTask task = new PrioritizedTask(priority, submissionCount.getAndIncrement(),
+        timedTask, result);
+    // Cancelling the result, or letting it time out, interrupts the work if it is still running
+    // and takes it out of its lane if it has not started.
+    result.whenComplete((ignored, e) -> {
+      if (e != null) {
+        timedTask.cancel(true);
+        if (lane.pendingTasks.remove(task)) {
+          lane.signalIfIdle();
+        }
+      }
+    });
+    try {
+      lane.dispatch(task);
+    } catch (RejectedExecutionException e) {
+      rejectedTaskCount.increment();
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private static <T> CompletableFuture<T> handleOnFxThread(CompletableFuture<T> result,
+      Consumer<T> workHandler, Consumer<Throwable> failureHandler) {
+    result.whenCompleteAsync((value, e) -> {
+      if (e != null) {
+        failureHandler.accept(e);
+      } else {
+        workHandler.accept(value);
+      }
+    }, Platform::runLater);
+    return result;
+  }
+
+  public ExecutionStatistics getStatistics() {
+    long completedTasks = completedTaskCount.sum();
+    return new ExecutionStatistics(
+        computeLane.pendingTasks.size() + ioLane.pendingTasks.size(),
+        computeLane.runningTaskCount.get() + ioLane.runningTaskCount.get(),
+        completedTasks, rejectedTaskCount.sum(),
+        averageOf(totalWaitTimeInNanos.sum(), completedTasks),
+        averageOf(totalRunTimeInNanos.sum(), completedTasks));
+  }
+
+  public void shutdown() {
+    // Tasks that have already been accepted get a short while to finish before being interrupted.
+    isShutdown = true;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_IN_SECONDS);
+    try {
+      computeLane.awaitIdleUntil(deadline);
+      ioLane.awaitIdleUntil(deadline);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    RejectedExecutionException shutdownException = new RejectedExecutionException(
+        "Parallel execution service has shut down.");
+    computeLane.abandonPendingTasks(shutdownException);
+    ioLane.abandonPendingTasks(shutdownException);
+    computePool.shutdownNow();
+    ioExecutor.shutdownNow();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Supplier<ExecutorService> findVirtualThreadExecutorFactory() {
+    try {
+      return (Supplier<ExecutorService>) Class.forName(VIRTUAL_THREAD_EXECUTOR_FACTORY_NAME)
+          .getDeclaredConstructor()
+          .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // Either built without the java21 profile, or running on a JVM older than the build.
+      return null;
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (VIRTUAL_THREAD_EXECUTOR_FACTORY == null) {
+      throw new IllegalStateException(
+          "Virtual threads need a build made with the java21 profile, running on Java 21.");
+    }
+    return VIRTUAL_THREAD_EXECUTOR_FACTORY.get();
+  }
+
+  private static Duration averageOf(long totalInNanos, long count) {
+    return count == 0 ? Duration.ZERO : Duration.ofNanos(totalInNanos / count);
+  }
+
+  // Holds back tasks beyond what its executor should be running at once, and hands them over
+  // highest priority first, then in the order in which they were submitted.
+  private class Lane {
+
+    private final ExecutorService executor;
+    private final int maximumRunningTasks;
+    private final int maximumPendingTasks;
+    private final PriorityBlockingQueue<PrioritizedTask> pendingTasks;
+    private final AtomicInteger runningTaskCount;
+
+    private Lane(ExecutorService executor, int maximumRunningTasks, int maximumPendingTasks) {
+      this.executor = executor;
+      this.maximumRunningTasks = maximumRunningTasks;
+      this.maximumPendingTasks = maximumPendingTasks;
+      this.pendingTasks = new PriorityBlockingQueue<>();
+      this.runningTaskCount = new AtomicInteger();
+    }
+
+    private void dispatch(PrioritizedTask task) {
+      if (isShutdown) {
+        throw new RejectedExecutionException("Parallel execution service has shut down.");
+      }
+      if (pendingTasks.size() >= maximumPendingTasks) {
+        throw new RejectedExecutionException("Too many tasks are already waiting to run.");
+      }
+      pendingTasks.add(task);
+      startPendingTasks();
+    }
+
+    // Called after every submission and every finished task, so a task added while the lane is
+    // full is picked up by whichever running task finishes next.
+    private void startPendingTasks() {
+      while (!pendingTasks.isEmpty()) {
+        int runningTasks = runningTaskCount.get();
+        if (runningTasks >= maximumRunningTasks) {
+          return;
+        }
+        if (!runningTaskCount.compareAndSet(runningTasks, runningTasks + 1)) {
+          continue;
+        }
+        PrioritizedTask task = pendingTasks.poll();
+        if (task == null) {
+          runningTaskCount.decrementAndGet();
+          continue;
+        }
+        try {
+          executor.execute(() -> {
+            try {
+              task.timedTask.run();
+            } finally {
+              runningTaskCount.decrementAndGet();
+              startPendingTasks();
+              signalIfIdle();
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          runningTaskCount.decrementAndGet();
+          task.result.completeExceptionally(e);
+          signalIfIdle();
+        }
+      }
+    }
 
-  public <T> void executeInParallel(Supplier<T> heavyWork, Consumer<Object> workHandler) {
-    Task<T> task = new Task<>() {
-      @Override
-      protected T call() {
-        return heavyWork.get();
+    private boolean isIdle() {
+      return pendingTasks.isEmpty() && runningTaskCount.get() == 0;
+    }
+
+    // Called whenever a task leaves the lane. The lane's state changes before its monitor is
+    // taken, and a waiter checks it while holding the monitor, so no wakeup is missed.
+    private void signalIfIdle() {
+      if (isIdle()) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+
+    private synchronized void awaitIdleUntil(long deadline) throws InterruptedException {
+      long remainingNanos;
+      while (!isIdle() && (remainingNanos = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+      }
+    }
+
+    private void abandonPendingTasks(RejectedExecutionException shutdownException) {
+      PrioritizedTask task;
+      while ((task = pendingTasks.poll()) != null) {
+        task.result.completeExceptionally(shutdownException);
       }
-    };
+    }
+  }
+
+  private static class PrioritizedTask implements Comparable<PrioritizedTask> {
+
+    private final Priority priority;
+    private final long submissionNumber;
+    private final FutureTask<Void> timedTask;
+    private final CompletableFuture<?> result;
+
+    private PrioritizedTask(Priority priority, long submissionNumber, FutureTask<Void> timedTask,
+        CompletableFuture<?> result) {
+      this.priority = priority;
+      this.submissionNumber = submissionNumber;
+      this.timedTask = timedTask;
+      this.result = result;
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask that) {
+      int priorityComparison = priority.compareTo(that.priority);
+      return priorityComparison != 0 ? priorityComparison
+          : Long.compare(submissionNumber, that.submissionNumber);
+    }
+  }
+
+  public static class ExecutionStatistics {
+
+    private final int queueDepth;
+    private final int activeThreadCount;
+    private final long completedTaskCount;
+    private final long rejectedTaskCount;
+    private final Duration averageWaitTime;
+    private final Duration averageRunTime;
+
+    private ExecutionStatistics(int queueDepth, int activeThreadCount, long completedTaskCount,
+        long rejectedTaskCount, Duration averageWaitTime, Duration averageRunTime) {
+      this.queueDepth = queueDepth;
+      this.activeThreadCount = activeThreadCount;
+      this.completedTaskCount = completedTaskCount;
+      this.rejectedTaskCount = rejectedTaskCount;
+      this.averageWaitTime = averageWaitTime;
+      this.averageRunTime = averageRunTime;
+    }
+
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    public int getActiveThreadCount() {
+      return activeThreadCount;
+    }
+
+    public long getCompletedTaskCount() {
+      return completedTaskCount;
+    }
+
+    public long getRejectedTaskCount() {
+      return rejectedTaskCount;
+    }
+
+    public Duration getAverageWaitTime() {
+      return averageWaitTime;
+    }
 
-    task.setOnSucceeded(
-        workerStateEvent -> workHandler.accept(workerStateEvent.getSource().getValue()));
+    public Duration getAverageRunTime() {
+      return averageRunTime;
+    }
 
-    executorFactory.get().execute(task);
+    @Override
+    public String toString() {
+      return String.format(
+          "%d queued, %d active, %d completed, %d rejected, waited %d ms and ran %d ms on average",
+          queueDepth, activeThreadCount, completedTaskCount, rejectedTaskCount,
+          averageWaitTime.toMillis(), averageRunTime.toMillis());
+    }
   }
 }
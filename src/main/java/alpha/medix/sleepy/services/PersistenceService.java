@@ -0,0 +1,149 @@
+package alpha.medix.sleepy.services;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class PersistenceService {
+
+  private static final Path SHUTDOWN = Paths.get("");
+
+  private final Map<Path, PendingWrite> pathToPendingWrite;
+  private final BlockingQueue<Path> queuedPaths;
+  private final Thread writerThread;
+  private boolean isOpen;
+
+  public PersistenceService() {
+    this.pathToPendingWrite = new HashMap<>();
+    this.queuedPaths = new LinkedBlockingQueue<>();
+    this.isOpen = true;
+    this.writerThread = new Thread(this::writeLoop, "persistence-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  // The content should already be a snapshot, since it is written later on the writer thread.
+  public synchronized CompletableFuture<Void> write(Path path, ContentWriter contentWriter) {
+    if (!isOpen) {
+      CompletableFuture<Void> completion = new CompletableFuture<>();
+      completion.completeExceptionally(new IOException("Persistence service has shut down."));
+      return completion;
+    }
+    // A save of a file that is still waiting to be written replaces the older content, and both
+    // callers are told once the newer content is on disk.
+    Path normalisedPath = path.toAbsolutePath().normalize();
+    PendingWrite pendingWrite = pathToPendingWrite.get(normalisedPath);
+    if (pendingWrite == null) {
+      pendingWrite = new PendingWrite();
+      pathToPendingWrite.put(normalisedPath, pendingWrite);
+      queuedPaths.add(normalisedPath);
+    }
+    pendingWrite.contentWriter = contentWriter;
+    return pendingWrite.completion;
+  }
+
+  public void shutdown() {
+    synchronized (this) {
+      if (!isOpen) {
+        return;
+      }
+      isOpen = false;
+      queuedPaths.add(SHUTDOWN);
+    }
+    // Every write queued before shutdown is still carried out.
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public static void writeAtomically(Path path, ContentWriter contentWriter) throws IOException {
+    // Written to a temporary file first, so a crash part way through never leaves a truncated
+    // file behind.
+    Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+        contentWriter.writeTo(outputStream);
+        outputStream.flush();
+        channel.force(true);
+      }
+      Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      Files.deleteIfExists(temporaryPath);
+      throw e;
+    }
+    forceDirectoryOf(path);
+  }
+
+  private static void forceDirectoryOf(Path path) {
+    try (FileChannel directoryChannel = FileChannel
+        .open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+      directoryChannel.force(true);
+    } catch (IOException ignored) {
+      // Not every platform allows a directory to be opened and synced.
+    }
+  }
+
+  private void writeLoop() {
+    while (true) {
+      Path path;
+      try {
+        path = queuedPaths.take();
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (path == SHUTDOWN) {
+        break;
+      }
+      // Removed before writing, so a save made during the write is queued again rather than lost.
+      PendingWrite pendingWrite;
+      synchronized (this) {
+        pendingWrite = pathToPendingWrite.remove(path);
+      }
+      try {
+        writeAtomically(path, pendingWrite.contentWriter);
+        pendingWrite.completion.complete(null);
+      } catch (IOException | RuntimeException e) {
+        pendingWrite.completion.completeExceptionally(e);
+      }
+    }
+
+    IOException shutdownException = new IOException("Persistence service has shut down.");
+    synchronized (this) {
+      pathToPendingWrite.values()
+          .forEach(pendingWrite -> pendingWrite.completion.completeExceptionally(shutdownException));
+      pathToPendingWrite.clear();
+    }
+  }
+
+  public interface ContentWriter {
+
+    void writeTo(OutputStream outputStream) throws IOException;
+  }
+
+  private static class PendingWrite {
+
+    private final CompletableFuture<Void> completion;
+    private ContentWriter contentWriter;
+
+    private PendingWrite() {
+      this.completion = new CompletableFuture<>();
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package alpha.medix.sleepy.services;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+// An append-only file of checksummed records. A single writer thread takes whatever appends are
+// waiting, writes them together and forces them to disk once, and only then acknowledges them.
+class RecordJournal {
+
+  static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+  private static final int MAXIMUM_BATCH_SIZE = 1024;
+  private static final PendingAppend CLOSE = new PendingAppend(null, null);
+
+  private final String name;
+  private final long compactionThresholdInBytes;
+  private final Compactor compactor;
+  private final BlockingQueue<PendingAppend> pendingAppends;
+  private FileChannel channel;
+  private Thread writerThread;
+  private long nextCompactionSizeInBytes;
+  private IOException failureSinceLastFlush;
+  private IOException permanentFailure;
+  private boolean isOpen;
+
+  // The compactor is called on the writer thread once the journal grows past the threshold, and
+  // is expected to fold the journal into a snapshot and truncate it.
+  RecordJournal(String name, long compactionThresholdInBytes, Compactor compactor) {
+    this.name = name;
+    this.compactionThresholdInBytes = compactionThresholdInBytes;
+    this.compactor = compactor;
+    this.pendingAppends = new LinkedBlockingQueue<>();
+    this.nextCompactionSizeInBytes = compactionThresholdInBytes;
+  }
+
+  synchronized boolean isStarted() {
+    return writerThread != null;
+  }
+
+  // Appends are written at the channel's current position, so it should already be past the
+  // last intact record.
+  synchronized void start(FileChannel channel, String writerThreadName) {
+    if (writerThread != null) {
+      throw new IllegalStateException(String.format("%s has already been started.", name));
+    }
+    this.channel = channel;
+    isOpen = true;
+    writerThread = new Thread(this::writeLoop, writerThreadName);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  CompletableFuture<Void> append(byte[] payload) {
+    return enqueue(payload);
+  }
+
+  CompletableFuture<Void> flush() {
+    // An empty append is acknowledged once every append queued before it has been forced, and
+    // fails if any append queued since the previous flush failed.
+    return enqueue(null);
+  }
+
+  void close() throws IOException {
+    synchronized (this) {
+      if (!isOpen) {
+        return;
+      }
+      isOpen = false;
+      pendingAppends.add(CLOSE);
+    }
+    // Appends are only queued while the journal is open, so every one of them is ahead of CLOSE
+    // and is written or failed before the writer thread ends.
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+
+  static byte[] readRecord(DataInputStream inputStream, int maximumRecordSize)
+      throws IOException {
+    try {
+      int length = inputStream.readInt();
+      int expectedChecksum = inputStream.readInt();
+      if (length < 0 || maximumRecordSize < length) {
+        return null;
+      }
+      byte[] payload = new byte[length];
+      inputStream.readFully(payload);
+      CRC32 checksum = new CRC32();
+      checksum.update(payload);
+      return (int) checksum.getValue() == expectedChecksum ? payload : null;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  static void writeRecord(DataOutputStream outputStream, byte[] payload) throws IOException {
+    CRC32 checksum = new CRC32();
+    checksum.update(payload);
+    outputStream.writeInt(payload.length);
+    outputStream.writeInt((int) checksum.getValue());
+    outputStream.write(payload);
+  }
+
+  private synchronized CompletableFuture<Void> enqueue(byte[] payload) {
+    CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+    if (!isOpen) {
+      acknowledgement.completeExceptionally(
+          new IOException(String.format("%s is not open.", name)));
+      return acknowledgement;
+    }
+    pendingAppends.add(new PendingAppend(payload, acknowledgement));
+    return acknowledgement;
+  }
+
+  private void writeLoop() {
+    List<PendingAppend> batch = new ArrayList<>(MAXIMUM_BATCH_SIZE);
+    boolean isClosing = false;
+    while (!isClosing) {
+      try {
+        batch.add(pendingAppends.take());
+      } catch (InterruptedException e) {
+        break;
+      }
+      pendingAppends.drainTo(batch, MAXIMUM_BATCH_SIZE - 1);
+      isClosing = batch.remove(CLOSE);
+      if (!batch.isEmpty()) {
+        writeBatch(batch);
+      }
+      batch.clear();
+    }
+
+    IOException closedException = new IOException(String.format("%s was closed.", name));
+    pendingAppends.forEach(pendingAppend -> {
+      if (pendingAppend != CLOSE) {
+        pendingAppend.acknowledgement.completeExceptionally(closedException);
+      }
+    });
+  }
+
+  private void writeBatch(List<PendingAppend> batch) {
+    if (permanentFailure != null) {
+      batch.forEach(
+          pendingAppend -> pendingAppend.acknowledgement.completeExceptionally(permanentFailure));
+      return;
+    }
+    int batchSize = batch.stream()
+        .filter(pendingAppend -> pendingAppend.payload != null)
+        .mapToInt(pendingAppend -> RECORD_HEADER_SIZE + pendingAppend.payload.length)
+        .sum();
+    ByteBuffer buffer = ByteBuffer.allocate(batchSize);
+    CRC32 checksum = new CRC32();
+    for (PendingAppend pendingAppend : batch) {
+      if (pendingAppend.payload == null) {
+        continue;
+      }
+      checksum.reset();
+      checksum.update(pendingAppend.payload);
+      buffer.putInt(pendingAppend.payload.length);
+      buffer.putInt((int) checksum.getValue());
+      buffer.put(pendingAppend.payload);
+    }
+    buffer.flip();
+
+    long batchPosition = -1;
+    try {
+      batchPosition = channel.position();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      if (!discardPartialBatchFrom(batchPosition)) {
+        // Anything written after the torn bytes would be acknowledged but never replayed, since
+        // replay stops at the first torn record, so the journal takes no more writes at all.
+        permanentFailure = new IOException(String.format(
+            "%s could not be rewound after a failed write.", name), e);
+      }
+      batch.forEach(pendingAppend -> pendingAppend.acknowledgement.completeExceptionally(e));
+      // A flush in this batch fails along with it, so only appends after the last one are left
+      // for the next flush to report.
+      boolean endsWithFlush = batch.get(batch.size() - 1).payload == null;
+      failureSinceLastFlush = endsWithFlush ? null : e;
+      return;
+    }
+    for (PendingAppend pendingAppend : batch) {
+      if (pendingAppend.payload == null && failureSinceLastFlush != null) {
+        pendingAppend.acknowledgement.completeExceptionally(new IOException(
+            String.format("An earlier append to the %s failed.", name.toLowerCase()),
+            failureSinceLastFlush));
+        failureSinceLastFlush = null;
+      } else {
+        pendingAppend.acknowledgement.complete(null);
+      }
+    }
+
+    try {
+      if (channel.size() > nextCompactionSizeInBytes) {
+        compactor.compact();
+        nextCompactionSizeInBytes = compactionThresholdInBytes;
+      }
+    } catch (IOException | UncheckedIOException e) {
+      // The journal stays authoritative, so compaction is retried once it has grown by another
+      // threshold, rather than re-reading the whole journal after every batch.
+      nextCompactionSizeInBytes += compactionThresholdInBytes;
+    }
+  }
+
+  // Returns whether the journal ends at its last acknowledged record again.
+  private boolean discardPartialBatchFrom(long batchPosition) {
+    if (batchPosition < 0) {
+      // The position could not even be read, so nothing of the batch was written.
+      return true;
+    }
+    try {
+      channel.truncate(batchPosition);
+      channel.position(batchPosition);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  interface Compactor {
+
+    void compact() throws IOException;
+  }
+
+  private static class PendingAppend {
+
+    private final byte[] payload;
+    private final CompletableFuture<Void> acknowledgement;
+
+    private PendingAppend(byte[] payload, CompletableFuture<Void> acknowledgement) {
+      this.payload = payload;
+      this.acknowledgement = acknowledgement;
+    }
+  }
+}
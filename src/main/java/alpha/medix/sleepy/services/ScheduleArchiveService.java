@@ -0,0 +1,229 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.model.Schedule;
+import alpha.medix.sleepy.utils.ScheduleCodec;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class ScheduleArchiveService {
+
+  private static final int MAXIMUM_BATCH_SIZE = 4096;
+  private static final PendingEviction SHUTDOWN = new PendingEviction(null, null, null);
+
+  private final Path archivePath;
+  private final BlockingQueue<PendingEviction> pendingEvictions;
+  private final Thread archiveWriterThread;
+  private final Consumer<IOException> failureHandler;
+  private boolean isOpen;
+
+  public ScheduleArchiveService(String configPath, Consumer<IOException> failureHandler) {
+    this.archivePath = Paths.get(configPath + "/schedule_archive");
+    this.pendingEvictions = new LinkedBlockingQueue<>();
+    this.archiveWriterThread = new Thread(this::writeLoop, "schedule-archive-writer");
+    this.archiveWriterThread.setDaemon(true);
+    this.failureHandler = failureHandler;
+    this.isOpen = true;
+    this.archiveWriterThread.start();
+  }
+
+  // Completed once the schedules have been forced to the user's archive.
+  public synchronized CompletableFuture<Void> archive(String username,
+      List<Schedule> evictedSchedules) {
+    CompletableFuture<Void> completion = new CompletableFuture<>();
+    if (!isOpen) {
+      completion.completeExceptionally(new IOException("Schedule archive has shut down."));
+      return completion;
+    }
+    pendingEvictions.add(new PendingEviction(username, evictedSchedules, completion));
+    return completion;
+  }
+
+  public List<Schedule> loadArchivedSchedulesFor(String username) throws IOException {
+    // Evictions can be replayed from the schedule journal after a crash, so the same schedule
+    // may have been archived more than once.
+    Map<LocalDateTime, Schedule> timeOfCreationToSchedule = new TreeMap<>();
+    try (DataInputStream archiveInputStream = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(archiveFileFor(username))))) {
+      while (true) {
+        int memberSize = archiveInputStream.readInt();
+        if (memberSize < 0) {
+          break;
+        }
+        byte[] member = new byte[memberSize];
+        archiveInputStream.readFully(member);
+        readMember(member, schedule -> timeOfCreationToSchedule
+            .put(schedule.getTimeOfCreation(), schedule));
+      }
+    } catch (NoSuchFileException e) {
+      return List.of();
+    } catch (EOFException e) {
+      // End of the archive, or a member that was torn by a crash while being appended.
+    }
+    return new ArrayList<>(timeOfCreationToSchedule.values());
+  }
+
+  public void shutdown() {
+    synchronized (this) {
+      if (!isOpen) {
+        return;
+      }
+      isOpen = false;
+      pendingEvictions.add(SHUTDOWN);
+    }
+    try {
+      archiveWriterThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeLoop() {
+    List<PendingEviction> batch = new ArrayList<>(MAXIMUM_BATCH_SIZE);
+    boolean isShuttingDown = false;
+    while (!isShuttingDown) {
+      try {
+        batch.add(pendingEvictions.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      pendingEvictions.drainTo(batch, MAXIMUM_BATCH_SIZE - 1);
+      isShuttingDown = batch.remove(SHUTDOWN);
+
+      // Evictions for the same user are grouped so that each user's archive is opened and
+      // forced once per batch.
+      Map<String, List<PendingEviction>> usernameToPendingEvictions = new LinkedHashMap<>();
+      batch.forEach(pendingEviction -> usernameToPendingEvictions
+          .computeIfAbsent(pendingEviction.username, username -> new ArrayList<>())
+          .add(pendingEviction));
+      usernameToPendingEvictions.forEach((username, userPendingEvictions) -> {
+        List<Schedule> evictedSchedules = new ArrayList<>();
+        userPendingEvictions.forEach(pendingEviction -> evictedSchedules
+            .addAll(pendingEviction.evictedSchedules));
+        try {
+          appendToArchive(username, evictedSchedules);
+        } catch (IOException e) {
+          failureHandler.accept(e);
+          userPendingEvictions.forEach(pendingEviction -> pendingEviction.completion
+              .completeExceptionally(e));
+          return;
+        }
+        userPendingEvictions.forEach(pendingEviction -> pendingEviction.completion.complete(null));
+      });
+      batch.clear();
+    }
+
+    IOException shutdownException = new IOException("Schedule archive has shut down.");
+    pendingEvictions.forEach(pendingEviction -> {
+      if (pendingEviction != SHUTDOWN) {
+        pendingEviction.completion.completeExceptionally(shutdownException);
+      }
+    });
+  }
+
+  private void appendToArchive(String username, List<Schedule> evictedSchedules)
+      throws IOException {
+    // Each batch is compressed into its own length-prefixed member, so a member torn by a crash
+    // can be dropped before the next one is appended.
+    ByteArrayOutputStream member = new ByteArrayOutputStream();
+    try (DataOutputStream outputStream = new DataOutputStream(new GZIPOutputStream(member))) {
+      List<Schedule> orderedSchedules = new ArrayList<>(evictedSchedules);
+      orderedSchedules.sort(Comparator.comparing(Schedule::getTimeOfCreation));
+      for (Schedule schedule : orderedSchedules) {
+        byte[] payload = ScheduleCodec.encode(schedule);
+        outputStream.writeInt(payload.length);
+        outputStream.write(payload);
+      }
+    }
+
+    Files.createDirectories(archivePath);
+    try (FileChannel archiveChannel = FileChannel.open(archiveFileFor(username),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long position = validLengthOf(archiveChannel);
+      archiveChannel.truncate(position);
+      ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + member.size());
+      buffer.putInt(member.size()).put(member.toByteArray()).flip();
+      while (buffer.hasRemaining()) {
+        position += archiveChannel.write(buffer, position);
+      }
+      archiveChannel.force(false);
+    }
+  }
+
+  private static long validLengthOf(FileChannel archiveChannel) throws IOException {
+    long size = archiveChannel.size();
+    long position = 0;
+    ByteBuffer memberHeader = ByteBuffer.allocate(Integer.BYTES);
+    while (position + Integer.BYTES <= size) {
+      memberHeader.clear();
+      archiveChannel.read(memberHeader, position);
+      int memberSize = memberHeader.flip().getInt();
+      long nextPosition = position + Integer.BYTES + memberSize;
+      if (memberSize < 0 || nextPosition > size) {
+        break;
+      }
+      position = nextPosition;
+    }
+    return position;
+  }
+
+  private static void readMember(byte[] member, Consumer<Schedule> scheduleConsumer)
+      throws IOException {
+    try (DataInputStream memberInputStream = new DataInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(member)))) {
+      while (true) {
+        byte[] payload = new byte[memberInputStream.readInt()];
+        memberInputStream.readFully(payload);
+        scheduleConsumer.accept(ScheduleCodec.decode(ByteBuffer.wrap(payload)));
+      }
+    } catch (EOFException e) {
+      // Every schedule in the member has been read.
+    }
+  }
+
+  private Path archiveFileFor(String username) {
+    String filename = Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(username.getBytes(StandardCharsets.UTF_8));
+    return archivePath.resolve(filename + ".gz");
+  }
+
+  private static class PendingEviction {
+
+    private final String username;
+    private final List<Schedule> evictedSchedules;
+    private final CompletableFuture<Void> completion;
+
+    private PendingEviction(String username, List<Schedule> evictedSchedules,
+        CompletableFuture<Void> completion) {
+      this.username = username;
+      this.evictedSchedules = evictedSchedules;
+      this.completion = completion;
+    }
+  }
+}
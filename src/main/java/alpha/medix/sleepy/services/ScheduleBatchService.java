@@ -0,0 +1,188 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.model.AstronautScheduleBuilder;
+import alpha.medix.sleepy.model.Schedule;
+import alpha.medix.sleepy.services.ParallelExecutionService.Priority;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ScheduleBatchService {
+
+  private static final long MAXIMUM_WORK_DURATION_IN_MINUTES = Duration.ofDays(1).toMinutes()
+      - AstronautScheduleBuilder.ESSENTIAL_ACTIVITY_DURATION_IN_MINUTES;
+
+  private final ParallelExecutionService parallelExecutionService;
+
+  public ScheduleBatchService(ParallelExecutionService parallelExecutionService) {
+    this.parallelExecutionService = parallelExecutionService;
+  }
+
+  public BatchReport generate(Stream<ScheduleRequest> scheduleRequests)
+      throws InterruptedException {
+    long startTime = System.nanoTime();
+    List<Outcome> outcomes;
+    try {
+      // The batch runs as one background task on the compute lane, and its parallel stream is
+      // split across that lane's work-stealing workers.
+      outcomes = parallelExecutionService.submit(() -> scheduleRequests
+          .parallel()
+          .map(this::attempt)
+          .collect(Collectors.toList()), Priority.BACKGROUND
+      ).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Schedule batch was aborted.", e.getCause());
+    }
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - startTime);
+
+    List<Schedule> schedules = outcomes.stream()
+        .map(outcome -> outcome.schedule)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+    List<Failure> failures = outcomes.stream()
+        .map(outcome -> outcome.failure)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+    return new BatchReport(schedules, failures, elapsed);
+  }
+
+  private Outcome attempt(ScheduleRequest scheduleRequest) {
+    try {
+      return new Outcome(buildFrom(scheduleRequest), null);
+    } catch (RuntimeException e) {
+      return new Outcome(null, new Failure(scheduleRequest.getUsername(), e));
+    }
+  }
+
+  private static Schedule buildFrom(ScheduleRequest scheduleRequest) {
+    List<String> surveyResponses = scheduleRequest.getSurveyResponses();
+    int expectedNumberOfResponses = AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.size();
+    if (surveyResponses.size() != expectedNumberOfResponses) {
+      throw new IllegalArgumentException(
+          String.format("Expected %d survey responses but received %d.",
+              expectedNumberOfResponses, surveyResponses.size()));
+    }
+    long workDurationInMinutes = scheduleRequest.getWorkDurationInMinutes();
+    if (workDurationInMinutes < 0 || MAXIMUM_WORK_DURATION_IN_MINUTES < workDurationInMinutes) {
+      throw new IllegalArgumentException(
+          String.format("Work duration must be between 0 and %d minutes.",
+              MAXIMUM_WORK_DURATION_IN_MINUTES));
+    }
+
+    AstronautScheduleBuilder astronautScheduleBuilder = new AstronautScheduleBuilder();
+    for (int i = 0; i < expectedNumberOfResponses; i++) {
+      astronautScheduleBuilder.setQuestionResponse(i, surveyResponses.get(i));
+    }
+    return Optional
+        .ofNullable(astronautScheduleBuilder
+            .buildWith(scheduleRequest.getUsername(), workDurationInMinutes))
+        .orElseThrow(() -> new IllegalArgumentException(
+            "Survey responses did not match the possible responses."));
+  }
+
+  private static class Outcome {
+
+    private final Schedule schedule;
+    private final Failure failure;
+
+    private Outcome(Schedule schedule, Failure failure) {
+      this.schedule = schedule;
+      this.failure = failure;
+    }
+  }
+
+  public static class ScheduleRequest {
+
+    private final String username;
+    private final List<String> surveyResponses;
+    private final long workDurationInMinutes;
+
+    public ScheduleRequest(String username, List<String> surveyResponses,
+        long workDurationInMinutes) {
+      this.username = username;
+      this.surveyResponses = List.copyOf(surveyResponses);
+      this.workDurationInMinutes = workDurationInMinutes;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public List<String> getSurveyResponses() {
+      return surveyResponses;
+    }
+
+    public long getWorkDurationInMinutes() {
+      return workDurationInMinutes;
+    }
+  }
+
+  public static class Failure {
+
+    private final String username;
+    private final Exception cause;
+
+    public Failure(String username, Exception cause) {
+      this.username = username;
+      this.cause = cause;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public Exception getCause() {
+      return cause;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Failed to generate schedule for \"%s\". Reason: %s", username,
+          cause.getMessage());
+    }
+  }
+
+  public static class BatchReport {
+
+    private final List<Schedule> schedules;
+    private final List<Failure> failures;
+    private final Duration elapsed;
+
+    public BatchReport(List<Schedule> schedules, List<Failure> failures, Duration elapsed) {
+      this.schedules = schedules;
+      this.failures = failures;
+      this.elapsed = elapsed;
+    }
+
+    public List<Schedule> getSchedules() {
+      return schedules;
+    }
+
+    public List<Failure> getFailures() {
+      return failures;
+    }
+
+    public Duration getElapsed() {
+      return elapsed;
+    }
+
+    public int getNumberOfRecordsProcessed() {
+      return schedules.size() + failures.size();
+    }
+
+    public double getThroughputPerSecond() {
+      double elapsedSeconds = elapsed.toNanos() / 1e9d;
+      return elapsedSeconds > 0 ? getNumberOfRecordsProcessed() / elapsedSeconds : 0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Generated %d schedules with %d failures in %d ms (%.0f records/s).",
+          schedules.size(), failures.size(), elapsed.toMillis(), getThroughputPerSecond());
+    }
+  }
+}
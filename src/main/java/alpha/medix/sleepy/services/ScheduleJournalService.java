@@ -0,0 +1,250 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.model.Schedule;
+import alpha.medix.sleepy.model.ScheduleManager;
+import alpha.medix.sleepy.utils.ScheduleCodec;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class ScheduleJournalService {
+
+  private static final int FILE_HEADER_SIZE = Long.BYTES;
+  private static final int MAXIMUM_RECORD_SIZE = 1 << 20;
+  private static final long COMPACTION_THRESHOLD_IN_BYTES = 4L << 20;
+
+  private final Path journalPath;
+  private final Path snapshotPath;
+  private final int maximumSchedulesPerUser;
+  private final ScheduleArchiveService scheduleArchiveService;
+  private final Map<String, Set<LocalDateTime>> usernameToArchivedTimesOfCreation;
+  private final RecordJournal journal;
+  private FileChannel journalChannel;
+  private long journalGeneration;
+
+  public ScheduleJournalService(String configPath, int maximumSchedulesPerUser,
+      ScheduleArchiveService scheduleArchiveService) {
+    this.journalPath = Paths.get(configPath + "/schedules.journal");
+    this.snapshotPath = Paths.get(configPath + "/schedules.snapshot");
+    this.maximumSchedulesPerUser = maximumSchedulesPerUser;
+    this.scheduleArchiveService = scheduleArchiveService;
+    this.usernameToArchivedTimesOfCreation = new ConcurrentHashMap<>();
+    this.journal = new RecordJournal("Schedule journal", COMPACTION_THRESHOLD_IN_BYTES,
+        this::compact);
+  }
+
+  public synchronized int replayInto(ScheduleManager scheduleManager) throws IOException {
+    if (journal.isStarted()) {
+      throw new IllegalStateException("Schedule journal has already been opened.");
+    }
+    Files.createDirectories(journalPath.toAbsolutePath().getParent());
+
+    int numberOfSchedules = 0;
+    long snapshotGeneration = -1;
+    if (Files.exists(snapshotPath)) {
+      try (DataInputStream inputStream = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+        snapshotGeneration = inputStream.readLong();
+        byte[] payload;
+        while ((payload = RecordJournal.readRecord(inputStream, MAXIMUM_RECORD_SIZE)) != null) {
+          addTo(scheduleManager, ScheduleCodec.decode(ByteBuffer.wrap(payload)));
+          numberOfSchedules++;
+        }
+      }
+    }
+
+    journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long storedJournalGeneration = -1;
+    if (journalChannel.size() >= FILE_HEADER_SIZE) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      journalChannel.read(header, 0);
+      storedJournalGeneration = header.flip().getLong();
+    }
+
+    if (storedJournalGeneration <= snapshotGeneration) {
+      // Either a fresh journal or one that was already folded into the snapshot before a crash.
+      resetJournal(snapshotGeneration + 1);
+    } else {
+      journalGeneration = storedJournalGeneration;
+      journalChannel.position(FILE_HEADER_SIZE);
+      DataInputStream inputStream = new DataInputStream(
+          new BufferedInputStream(Channels.newInputStream(journalChannel)));
+      long validJournalSize = FILE_HEADER_SIZE;
+      byte[] payload;
+      while ((payload = RecordJournal.readRecord(inputStream, MAXIMUM_RECORD_SIZE)) != null) {
+        addTo(scheduleManager, ScheduleCodec.decode(ByteBuffer.wrap(payload)));
+        numberOfSchedules++;
+        validJournalSize += RecordJournal.RECORD_HEADER_SIZE + payload.length;
+      }
+      // Anything past the last intact record is a torn write that was never acknowledged.
+      journalChannel.truncate(validJournalSize);
+      journalChannel.force(true);
+      journalChannel.position(validJournalSize);
+    }
+
+    journal.start(journalChannel, "schedule-journal-writer");
+    return numberOfSchedules;
+  }
+
+  public CompletableFuture<Void> append(Schedule schedule) {
+    return journal.append(ScheduleCodec.encode(schedule));
+  }
+
+  // Meant as the ScheduleManager's eviction handler. Schedules are remembered once they are
+  // durably archived, so compaction knows it may drop them without archiving them again.
+  public void archiveEvicted(String username, List<Schedule> evictedSchedules) {
+    scheduleArchiveService.archive(username, evictedSchedules).thenRun(() ->
+        usernameToArchivedTimesOfCreation
+            .computeIfAbsent(username, key -> ConcurrentHashMap.newKeySet())
+            .addAll(timesOfCreationOf(evictedSchedules)));
+  }
+
+  public CompletableFuture<Void> flush() {
+    return journal.flush();
+  }
+
+  public void close() throws IOException {
+    journal.close();
+  }
+
+  private void compact() throws IOException {
+    // Only the newest schedules of each user are kept, matching what ScheduleManager holds in
+    // memory. Older ones are dropped once they are known to be in the schedule archive.
+    Map<String, Deque<byte[]>> usernameToPayloads = new LinkedHashMap<>();
+    Map<String, List<byte[]>> usernameToDroppedPayloads = new LinkedHashMap<>();
+    Consumer<byte[]> retainer = payload -> {
+      String username;
+      try {
+        username = ScheduleCodec.decodeUsername(ByteBuffer.wrap(payload));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      Deque<byte[]> payloads = usernameToPayloads
+          .computeIfAbsent(username, key -> new ArrayDeque<>());
+      payloads.addLast(payload);
+      if (payloads.size() > maximumSchedulesPerUser) {
+        usernameToDroppedPayloads.computeIfAbsent(username, key -> new ArrayList<>())
+            .add(payloads.removeFirst());
+      }
+    };
+    try {
+      if (Files.exists(snapshotPath)) {
+        readRecordsFrom(snapshotPath, retainer);
+      }
+      readRecordsFrom(journalPath, retainer);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    Map<String, List<Schedule>> usernameToDroppedSchedules = new LinkedHashMap<>();
+    for (Map.Entry<String, List<byte[]>> entry : usernameToDroppedPayloads.entrySet()) {
+      List<Schedule> droppedSchedules = new ArrayList<>();
+      for (byte[] payload : entry.getValue()) {
+        droppedSchedules.add(ScheduleCodec.decode(ByteBuffer.wrap(payload)));
+      }
+      usernameToDroppedSchedules.put(entry.getKey(), droppedSchedules);
+    }
+    archiveDurably(usernameToDroppedSchedules);
+
+    long snapshotGeneration = journalGeneration;
+    PersistenceService.writeAtomically(snapshotPath, snapshotOutputStream -> {
+      DataOutputStream outputStream = new DataOutputStream(snapshotOutputStream);
+      outputStream.writeLong(snapshotGeneration);
+      for (Deque<byte[]> payloads : usernameToPayloads.values()) {
+        for (byte[] payload : payloads) {
+          RecordJournal.writeRecord(outputStream, payload);
+        }
+      }
+      outputStream.flush();
+    });
+    resetJournal(journalGeneration + 1);
+    usernameToDroppedSchedules.forEach((username, droppedSchedules) ->
+        usernameToArchivedTimesOfCreation.computeIfPresent(username, (key, timesOfCreation) -> {
+          timesOfCreation.removeAll(timesOfCreationOf(droppedSchedules));
+          return timesOfCreation.isEmpty() ? null : timesOfCreation;
+        }));
+  }
+
+  private void archiveDurably(Map<String, List<Schedule>> usernameToDroppedSchedules)
+      throws IOException {
+    // Eviction archives schedules in the background and may not have finished, or may have
+    // failed, so anything not yet known to be archived is archived now. A schedule evicted
+    // before a restart can end up archived twice, which the archive already tolerates.
+    List<CompletableFuture<Void>> completions = new ArrayList<>();
+    usernameToDroppedSchedules.forEach((username, droppedSchedules) -> {
+      Set<LocalDateTime> archivedTimesOfCreation = usernameToArchivedTimesOfCreation
+          .getOrDefault(username, Set.of());
+      List<Schedule> unarchivedSchedules = droppedSchedules.stream()
+          .filter(schedule -> !archivedTimesOfCreation.contains(schedule.getTimeOfCreation()))
+          .collect(Collectors.toList());
+      if (!unarchivedSchedules.isEmpty()) {
+        completions.add(scheduleArchiveService.archive(username, unarchivedSchedules));
+      }
+    });
+    try {
+      CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[0])).get();
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to archive schedules before compacting the journal.",
+          e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while archiving schedules.", e);
+    }
+  }
+
+  private static Set<LocalDateTime> timesOfCreationOf(List<Schedule> schedules) {
+    return schedules.stream()
+        .map(Schedule::getTimeOfCreation)
+        .collect(Collectors.toSet());
+  }
+
+  private static void readRecordsFrom(Path path, Consumer<byte[]> payloadConsumer)
+      throws IOException {
+    try (DataInputStream inputStream = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(path)))) {
+      inputStream.readLong();
+      byte[] payload;
+      while ((payload = RecordJournal.readRecord(inputStream, MAXIMUM_RECORD_SIZE)) != null) {
+        payloadConsumer.accept(payload);
+      }
+    }
+  }
+
+  private void resetJournal(long generation) throws IOException {
+    journalChannel.truncate(0);
+    ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putLong(generation);
+    journalChannel.write(header.flip(), 0);
+    journalChannel.force(true);
+    journalChannel.position(FILE_HEADER_SIZE);
+    journalGeneration = generation;
+  }
+
+  private static void addTo(ScheduleManager scheduleManager, Schedule schedule) {
+    // Replayed schedules are not archived again when they push older ones out of memory, since
+    // compaction archives anything it drops from the journal.
+    scheduleManager.restore(schedule.getUsername(), schedule);
+  }
+}
@@ -1,39 +1,96 @@
 package alpha.medix.sleepy.services;
 
+import alpha.medix.sleepy.model.UserCredentialManager;
 import alpha.medix.sleepy.model.UserCredentials;
 import alpha.medix.sleepy.utils.JsonUtils;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.google.common.collect.Iterators;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class UserCredentialsService {
 
+  private static final int MAXIMUM_RECORD_SIZE = 1 << 16;
+  private static final long COMPACTION_THRESHOLD_IN_BYTES = 4L << 20;
+
   private final String userCredentialsPath;
+  private final Path journalPath;
+  private final RecordJournal journal;
+  private UserCredentialManager userCredentialManager;
+  private FileChannel journalChannel;
 
   public UserCredentialsService(String configPath) {
     this.userCredentialsPath = configPath + "/user_credentials.json";
+    this.journalPath = Paths.get(configPath + "/user_credentials.journal");
+    this.journal = new RecordJournal("User credentials journal", COMPACTION_THRESHOLD_IN_BYTES,
+        this::compact);
+  }
+
+  public synchronized int loadUserCredentialsInto(UserCredentialManager userCredentialManager)
+      throws IOException {
+    if (journal.isStarted()) {
+      throw new IllegalStateException("User credentials have already been loaded.");
+    }
+    // Created here rather than left to whichever other service touches the config directory
+    // first, since loads may run side by side.
+    Files.createDirectories(journalPath.toAbsolutePath().getParent());
+    journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    boolean isLoaded = false;
+    try {
+      List<UserCredentials> journalledUserCredentials = replayJournal();
+      // Journal records are upserts applied after the snapshot, so replaying ones that were
+      // already folded into the snapshot before a crash leaves the same credentials behind.
+      loadSnapshotInto(userCredentialManager, journalledUserCredentials);
+      isLoaded = true;
+    } finally {
+      if (!isLoaded) {
+        journalChannel.close();
+      }
+    }
+
+    this.userCredentialManager = userCredentialManager;
+    journal.start(journalChannel, "user-credentials-writer");
+    return userCredentialManager.size();
   }
 
-  public List<UserCredentials> loadUserCredentialsFromDisk() throws IOException {
-    InputStream inputStream = new FileInputStream(userCredentialsPath);
-    String fileContents = new String(inputStream.readAllBytes());
-    inputStream.close();
-    return Arrays.asList(JsonUtils.fromJson(fileContents, UserCredentials[].class).orElseThrow(
-        () -> new IOException(String.format("Failed to parse %s", userCredentialsPath))));
+  public CompletableFuture<Void> append(String username, String hashedPassword) {
+    return journal.append(encode(username, hashedPassword));
+  }
+
+  public CompletableFuture<Void> flush() {
+    return journal.flush();
+  }
+
+  public void close() throws IOException {
+    journal.close();
   }
 
   public void writeUserCredentialsToDisk(List<UserCredentials> userCredentialList)
       throws IOException {
-    OutputStream outputStream = new FileOutputStream(userCredentialsPath);
-    String fileContents = JsonUtils.toJson(userCredentialList.toArray());
-    outputStream.write(fileContents.getBytes());
-    outputStream.flush();
-    outputStream.close();
+    // Written in place rather than through the persistence service's queue, since compaction
+    // must not truncate the journal until the snapshot is on disk. Serialised straight into the
+    // file, since a large crew would not fit in a single String.
+    PersistenceService.writeAtomically(Paths.get(userCredentialsPath),
+        outputStream -> JsonUtils.toJson(userCredentialList, outputStream));
   }
 
   public List<UserCredentials> writeNewUserCredentialManagerFileToDisk() throws IOException {
@@ -41,4 +98,65 @@ public class UserCredentialsService {
     writeUserCredentialsToDisk(userCredentialsList);
     return userCredentialsList;
   }
+
+  private List<UserCredentials> replayJournal() throws IOException {
+    DataInputStream inputStream = new DataInputStream(
+        new BufferedInputStream(Channels.newInputStream(journalChannel)));
+    List<UserCredentials> journalledUserCredentials = new ArrayList<>();
+    long validJournalSize = 0;
+    byte[] payload;
+    while ((payload = RecordJournal.readRecord(inputStream, MAXIMUM_RECORD_SIZE)) != null) {
+      journalledUserCredentials.add(decode(payload));
+      validJournalSize += RecordJournal.RECORD_HEADER_SIZE + payload.length;
+    }
+    // Anything past the last intact record is a torn write that was never acknowledged.
+    journalChannel.truncate(validJournalSize);
+    journalChannel.force(true);
+    journalChannel.position(validJournalSize);
+    return journalledUserCredentials;
+  }
+
+  private void loadSnapshotInto(UserCredentialManager userCredentialManager,
+      List<UserCredentials> journalledUserCredentials) throws IOException {
+    // The snapshot is parsed straight from its bytes and each record is added as soon as it is
+    // read, so no copy of the whole file is ever held in memory.
+    try (InputStream inputStream = new BufferedInputStream(
+        new FileInputStream(userCredentialsPath));
+        MappingIterator<UserCredentials> userCredentialsIterator = JsonUtils
+            .fromJsonArray(inputStream, UserCredentials.class)) {
+      userCredentialManager.updateWith(
+          Iterators.concat(userCredentialsIterator, journalledUserCredentials.iterator()));
+    } catch (FileNotFoundException e) {
+      userCredentialManager.updateWith(journalledUserCredentials);
+    } catch (RuntimeException e) {
+      // A truncated or corrupt snapshot surfaces from the iterator as an unchecked exception,
+      // which is not always a RuntimeJsonMappingException.
+      throw new IOException(String.format("Failed to parse %s", userCredentialsPath), e);
+    }
+  }
+
+  private void compact() throws IOException {
+    // Every journalled change was applied to the manager before it was queued, so the manager
+    // already holds everything the journal does.
+    writeUserCredentialsToDisk(userCredentialManager.toList());
+    journalChannel.truncate(0);
+    journalChannel.force(true);
+    journalChannel.position(0);
+  }
+
+  private static byte[] encode(String username, String hashedPassword) {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (DataOutputStream outputStream = new DataOutputStream(payload)) {
+      outputStream.writeUTF(username);
+      outputStream.writeUTF(hashedPassword);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return payload.toByteArray();
+  }
+
+  private static UserCredentials decode(byte[] payload) throws IOException {
+    DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+    return new UserCredentials(inputStream.readUTF(), inputStream.readUTF());
+  }
 }
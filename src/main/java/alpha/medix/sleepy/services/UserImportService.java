@@ -0,0 +1,349 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.model.UserCredentialManager;
+import alpha.medix.sleepy.model.UserCredentials;
+import alpha.medix.sleepy.utils.PasswordHasher;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class UserImportService {
+
+  // Each batch is hashed as one task on the compute lane, so it is kept small enough to hold a
+  // compute worker for only a second or two at the default hashing cost, and interactive work
+  // queued behind an import does not wait long.
+  private static final int BATCH_SIZE = 16;
+  private static final int MAXIMUM_QUEUED_BATCHES = 2;
+  private static final int PROGRESS_INTERVAL = 10_000;
+  private static final int MAXIMUM_RECORDED_REJECTIONS = 1000;
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final UserCredentialManager userCredentialManager;
+  private final UserCredentialsService userCredentialsService;
+  private final PasswordHasher passwordHasher;
+  private final ParallelExecutionService parallelExecutionService;
+  private final int maximumBatchesInFlight;
+
+  // Passwords are hashed on the compute lane of the given service, so an import should itself
+  // run elsewhere, such as on its I/O lane, rather than wait on the lane it is feeding.
+  public UserImportService(UserCredentialManager userCredentialManager,
+      UserCredentialsService userCredentialsService, PasswordHasher passwordHasher,
+      ParallelExecutionService parallelExecutionService) {
+    this.userCredentialManager = userCredentialManager;
+    this.userCredentialsService = userCredentialsService;
+    this.passwordHasher = passwordHasher;
+    this.parallelExecutionService = parallelExecutionService;
+    this.maximumBatchesInFlight =
+        Runtime.getRuntime().availableProcessors() + MAXIMUM_QUEUED_BATCHES;
+  }
+
+  public ImportReport importUsersFrom(Path rosterPath, Consumer<ImportReport> progressHandler)
+      throws IOException, InterruptedException {
+    ImportReport report = new ImportReport();
+    long startTime = System.nanoTime();
+    // Only a few batches are hashed ahead of the one being inserted, so memory use is bounded no
+    // matter how large the roster is.
+    Deque<CompletableFuture<List<UserCredentials>>> hashedBatches = new ArrayDeque<>();
+    try (RosterReader rosterReader = rosterReaderFor(rosterPath)) {
+      List<RosterEntry> batch = new ArrayList<>(BATCH_SIZE);
+      RosterEntry rosterEntry;
+      while ((rosterEntry = rosterReader.next()) != null) {
+        String rejectionReason = rejectionReasonFor(rosterEntry);
+        if (rejectionReason != null) {
+          report.reject(rosterEntry.username, rejectionReason);
+          continue;
+        }
+        batch.add(rosterEntry);
+        if (batch.size() == BATCH_SIZE) {
+          submitForHashing(batch, hashedBatches, report, progressHandler);
+          batch = new ArrayList<>(BATCH_SIZE);
+          if (hashedBatches.size() > maximumBatchesInFlight) {
+            insert(awaitBatch(hashedBatches.removeFirst()), report, progressHandler);
+          }
+        }
+      }
+      if (!batch.isEmpty()) {
+        submitForHashing(batch, hashedBatches, report, progressHandler);
+      }
+      while (!hashedBatches.isEmpty()) {
+        insert(awaitBatch(hashedBatches.removeFirst()), report, progressHandler);
+      }
+    } finally {
+      // Batches still in flight after a failure are not inserted, so there is no point in
+      // finishing their hashes.
+      hashedBatches.forEach(hashedBatch -> hashedBatch.cancel(true));
+    }
+
+    // Each imported user has been appended to the credentials journal, so it only remains to wait
+    // for the last of those appends to reach the disk.
+    try {
+      userCredentialsService.flush().get();
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to save imported users.", e.getCause());
+    }
+    report.elapsed = Duration.ofNanos(System.nanoTime() - startTime);
+    return report;
+  }
+
+  private String rejectionReasonFor(RosterEntry rosterEntry) {
+    if (rosterEntry.rejectionReason != null) {
+      return rosterEntry.rejectionReason;
+    }
+    if (rosterEntry.username == null || rosterEntry.username.isBlank()) {
+      return "Missing username";
+    }
+    if (rosterEntry.password == null || rosterEntry.password.isEmpty()) {
+      return "Missing password";
+    }
+    // Checked before hashing so that existing users do not cost a password hash.
+    if (userCredentialManager.containsUser(rosterEntry.username)) {
+      return "User already exists";
+    }
+    return null;
+  }
+
+  private void submitForHashing(List<RosterEntry> batch,
+      Deque<CompletableFuture<List<UserCredentials>>> hashedBatches, ImportReport report,
+      Consumer<ImportReport> progressHandler) throws IOException, InterruptedException {
+    // The compute lane turns work away while too much is already waiting on it, so the oldest
+    // batch is inserted to make room before trying again. Only once none of this import's own
+    // batches are left to wait for does a rejection fail the import.
+    while (true) {
+      CompletableFuture<List<UserCredentials>> hashedBatch = parallelExecutionService
+          .submit(() -> batch.stream()
+              .map(rosterEntry -> new UserCredentials(rosterEntry.username,
+                  passwordHasher.hash(rosterEntry.password)))
+              .collect(Collectors.toList()));
+      boolean isRejected = hashedBatch
+          .handle((ignored, e) -> e instanceof RejectedExecutionException)
+          .getNow(false);
+      if (!isRejected || hashedBatches.isEmpty()) {
+        hashedBatches.add(hashedBatch);
+        return;
+      }
+      insert(awaitBatch(hashedBatches.removeFirst()), report, progressHandler);
+    }
+  }
+
+  private static List<UserCredentials> awaitBatch(
+      CompletableFuture<List<UserCredentials>> hashedBatch)
+      throws IOException, InterruptedException {
+    try {
+      return hashedBatch.get();
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to hash imported passwords.", e.getCause());
+    }
+  }
+
+  private void insert(List<UserCredentials> hashedBatch, ImportReport report,
+      Consumer<ImportReport> progressHandler) {
+    int previousProcessedCount = report.getProcessedCount();
+    List<String> existingUsernames = userCredentialManager.registerHashedUsers(hashedBatch);
+    existingUsernames.forEach(username -> report.reject(username, "User already exists"));
+    report.importedCount += hashedBatch.size() - existingUsernames.size();
+    if (report.getProcessedCount() / PROGRESS_INTERVAL
+        != previousProcessedCount / PROGRESS_INTERVAL) {
+      progressHandler.accept(report);
+    }
+  }
+
+  private static RosterReader rosterReaderFor(Path rosterPath) throws IOException {
+    String filename = rosterPath.getFileName().toString().toLowerCase();
+    if (filename.endsWith(".json")) {
+      return new JsonRosterReader(Files.newInputStream(rosterPath));
+    } else if (filename.endsWith(".csv")) {
+      return new CsvRosterReader(Files.newBufferedReader(rosterPath, StandardCharsets.UTF_8));
+    }
+    throw new IOException(String.format("Unsupported roster format: %s", filename));
+  }
+
+  private interface RosterReader extends Closeable {
+
+    RosterEntry next() throws IOException;
+  }
+
+  private static class RosterEntry {
+
+    private String username;
+    private String password;
+    // Set by a reader that found the entry malformed, so the entry is rejected as it is.
+    private String rejectionReason;
+  }
+
+  // Expects an array of {"username": ..., "password": ...} objects and reads one at a time.
+  private static class JsonRosterReader implements RosterReader {
+
+    private final JsonParser parser;
+
+    private JsonRosterReader(InputStream inputStream) throws IOException {
+      this.parser = JSON_FACTORY.createParser(inputStream);
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        parser.close();
+        throw new IOException("User roster must be a JSON array.");
+      }
+    }
+
+    @Override
+    public RosterEntry next() throws IOException {
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.END_ARRAY || token == null) {
+        return null;
+      }
+      if (token != JsonToken.START_OBJECT) {
+        throw new IOException(
+            String.format("Expected a user object at %s.", parser.getCurrentLocation()));
+      }
+      RosterEntry rosterEntry = new RosterEntry();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.getCurrentName();
+        JsonToken valueToken = parser.nextToken();
+        if (!"username".equals(fieldName) && !"password".equals(fieldName)) {
+          parser.skipChildren();
+        } else if (valueToken != JsonToken.VALUE_STRING) {
+          // Numbers and booleans are not taken as their text, and objects and arrays are skipped
+          // whole, so that the fields of a nested object are not read as the user's own.
+          parser.skipChildren();
+          rosterEntry.rejectionReason = "username".equals(fieldName)
+              ? "Username is not a string" : "Password is not a string";
+        } else if ("username".equals(fieldName)) {
+          // Stripped as in CSV rosters, so that both formats import a user under the same name.
+          String username = parser.getValueAsString();
+          rosterEntry.username = username == null ? null : username.strip();
+        } else {
+          rosterEntry.password = parser.getValueAsString();
+        }
+      }
+      return rosterEntry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      parser.close();
+    }
+  }
+
+  // Expects one "username,password" line per user, with an optional header line. Usernames may
+  // not contain commas, but passwords may.
+  private static class CsvRosterReader implements RosterReader {
+
+    private final BufferedReader reader;
+    private boolean isFirstLine;
+
+    private CsvRosterReader(BufferedReader reader) {
+      this.reader = reader;
+      this.isFirstLine = true;
+    }
+
+    @Override
+    public RosterEntry next() throws IOException {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        boolean isHeader = isFirstLine && line.equalsIgnoreCase("username,password");
+        isFirstLine = false;
+        if (isHeader || line.isBlank()) {
+          continue;
+        }
+        int separatorIndex = line.indexOf(',');
+        RosterEntry rosterEntry = new RosterEntry();
+        rosterEntry.username = (separatorIndex < 0 ? line : line.substring(0, separatorIndex))
+            .strip();
+        rosterEntry.password = separatorIndex < 0 ? null : line.substring(separatorIndex + 1);
+        return rosterEntry;
+      }
+      return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  public static class ImportReport {
+
+    private final List<Rejection> rejections;
+    private int importedCount;
+    private int rejectedCount;
+    private Duration elapsed;
+
+    private ImportReport() {
+      this.rejections = new ArrayList<>();
+      this.elapsed = Duration.ZERO;
+    }
+
+    private void reject(String username, String reason) {
+      rejectedCount++;
+      if (rejections.size() < MAXIMUM_RECORDED_REJECTIONS) {
+        rejections.add(new Rejection(username, reason));
+      }
+    }
+
+    public int getImportedCount() {
+      return importedCount;
+    }
+
+    public int getRejectedCount() {
+      return rejectedCount;
+    }
+
+    public int getProcessedCount() {
+      return importedCount + rejectedCount;
+    }
+
+    public List<Rejection> getRejections() {
+      return Collections.unmodifiableList(rejections);
+    }
+
+    public Duration getElapsed() {
+      return elapsed;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Imported %d users and rejected %d in %d ms", importedCount,
+          rejectedCount, elapsed.toMillis());
+    }
+  }
+
+  public static class Rejection {
+
+    private final String username;
+    private final String reason;
+
+    private Rejection(String username, String reason) {
+      this.username = username;
+      this.reason = reason;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public String getReason() {
+      return reason;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %s", username, reason);
+    }
+  }
+}
@@ -1,20 +1,93 @@
 package alpha.medix.sleepy.utils;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 public class HashingUtils {
 
-  public static String sha256(String text) {
-    MessageDigest digest;
+  private static final String HMAC_SHA256 = "HmacSHA256";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  // Looking up a provider on every call is far more expensive than the hash itself, so each
+  // thread keeps its own instances.
+  private static final ThreadLocal<MessageDigest> SHA256_DIGEST = ThreadLocal
+      .withInitial(() -> {
+        try {
+          return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+          throw new RuntimeException(e);
+        }
+      });
+  private static final ThreadLocal<Mac> HMAC_SHA256_MAC = ThreadLocal.withInitial(() -> {
     try {
-      digest = MessageDigest.getInstance("SHA-256");
+      return Mac.getInstance(HMAC_SHA256);
     } catch (NoSuchAlgorithmException e) {
       throw new RuntimeException(e);
     }
-    byte[] hashedBytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
-    return new String(hashedBytes);
+  });
+
+  public static String sha256(String text) {
+    return toHex(SHA256_DIGEST.get().digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static String legacySha256(String text) {
+    // Passwords used to be stored by decoding the raw digest with the platform charset, which
+    // loses information but is still needed to verify credentials saved in that format.
+    return new String(SHA256_DIGEST.get().digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static byte[] pbkdf2HmacSha256(byte[] password, byte[] salt, int iterations,
+      int derivedKeyLength) {
+    Mac mac = HMAC_SHA256_MAC.get();
+    int blockLength = mac.getMacLength();
+    byte[] derivedKey = new byte[derivedKeyLength];
+    byte[] block = new byte[blockLength];
+    byte[] previousBlock = new byte[blockLength];
+    try {
+      // HMAC pads keys with zeros, so a single zero byte stands in for an empty password, which
+      // SecretKeySpec would otherwise reject.
+      mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, HMAC_SHA256));
+      for (int blockIndex = 1; (blockIndex - 1) * blockLength < derivedKeyLength; blockIndex++) {
+        // U1 = HMAC(password, salt || INT(i)), then Uj = HMAC(password, Uj-1), xored together.
+        mac.update(salt);
+        mac.update((byte) (blockIndex >>> 24));
+        mac.update((byte) (blockIndex >>> 16));
+        mac.update((byte) (blockIndex >>> 8));
+        mac.update((byte) blockIndex);
+        mac.doFinal(previousBlock, 0);
+        System.arraycopy(previousBlock, 0, block, 0, blockLength);
+        for (int iteration = 1; iteration < iterations; iteration++) {
+          mac.update(previousBlock);
+          mac.doFinal(previousBlock, 0);
+          for (int i = 0; i < blockLength; i++) {
+            block[i] ^= previousBlock[i];
+          }
+        }
+        int offset = (blockIndex - 1) * blockLength;
+        System.arraycopy(block, 0, derivedKey, offset,
+            Math.min(blockLength, derivedKeyLength - offset));
+      }
+    } catch (GeneralSecurityException | IllegalStateException e) {
+      throw new RuntimeException(e);
+    } finally {
+      Arrays.fill(block, (byte) 0);
+      Arrays.fill(previousBlock, (byte) 0);
+    }
+    return derivedKey;
+  }
+
+  public static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(bytes[i] >>> 4) & 0xF];
+      hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(hex);
   }
 
 }
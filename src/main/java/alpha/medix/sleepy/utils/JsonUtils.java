@@ -1,28 +1,85 @@
 package alpha.medix.sleepy.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
-import java.util.Optional;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JsonUtils {
 
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-  public static <T> Optional<T> fromJson(String json, Class<T> clazz) {
+  // Readers and writers are immutable and thread-safe, so one of each is built per type and
+  // reused rather than resolving the type through the mapper on every call.
+  private static final Map<Class<?>, ObjectReader> TYPE_TO_READER = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> TYPE_TO_WRITER = new ConcurrentHashMap<>();
+
+  public static <T> T fromJson(byte[] json, Class<T> clazz) throws IOException {
+    try {
+      return readerFor(clazz).readValue(json);
+    } catch (IOException e) {
+      throw parsingFailure(clazz, e);
+    }
+  }
+
+  public static <T> T fromJson(InputStream inputStream, Class<T> clazz) throws IOException {
     try {
-      return Optional.of(OBJECT_MAPPER.readValue(json, clazz));
-    } catch (Exception e) {
-      return Optional.empty();
+      return readerFor(clazz).readValue(inputStream);
+    } catch (IOException e) {
+      throw parsingFailure(clazz, e);
     }
   }
 
-  public static String toJson(Object object) throws IOException {
+  public static <T> MappingIterator<T> fromJsonArray(InputStream inputStream, Class<T> clazz)
+      throws IOException {
+    // Elements of a root-level array are bound one at a time as the iterator advances.
     try {
-      return OBJECT_MAPPER.writeValueAsString(object);
-    } catch (JsonProcessingException e) {
-      throw new IOException(e);
+      return readerFor(clazz).readValues(inputStream);
+    } catch (IOException e) {
+      throw parsingFailure(clazz, e);
     }
   }
 
+  public static void toJson(Object object, OutputStream outputStream) throws IOException {
+    // The caller owns the stream, for example to force it to disk before closing it.
+    try {
+      writerFor(object.getClass()).writeValue(outputStream, object);
+    } catch (IOException e) {
+      throw serialisationFailure(object, e);
+    }
+  }
+
+  public static byte[] toJsonBytes(Object object) throws IOException {
+    try {
+      return writerFor(object.getClass()).writeValueAsBytes(object);
+    } catch (IOException e) {
+      throw serialisationFailure(object, e);
+    }
+  }
+
+  private static ObjectReader readerFor(Class<?> clazz) {
+    return TYPE_TO_READER.computeIfAbsent(clazz, OBJECT_MAPPER::readerFor);
+  }
+
+  private static ObjectWriter writerFor(Class<?> clazz) {
+    return TYPE_TO_WRITER.computeIfAbsent(clazz, key -> OBJECT_MAPPER.writerFor(key)
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+  }
+
+  private static IOException parsingFailure(Class<?> clazz, IOException cause) {
+    return new IOException(String.format("Failed to parse JSON as %s: %s",
+        clazz.getSimpleName(), cause.getMessage()), cause);
+  }
+
+  private static IOException serialisationFailure(Object object, IOException cause) {
+    return new IOException(String.format("Failed to write %s as JSON: %s",
+        object.getClass().getSimpleName(), cause.getMessage()), cause);
+  }
+
 }
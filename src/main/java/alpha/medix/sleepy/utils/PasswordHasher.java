@@ -0,0 +1,88 @@
+package alpha.medix.sleepy.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+public class PasswordHasher {
+
+  public static final int DEFAULT_ITERATIONS = 210_000;
+
+  private static final String ALGORITHM = "pbkdf2-sha256";
+  private static final String SEPARATOR = "$";
+  private static final int SALT_LENGTH = 16;
+  private static final int DERIVED_KEY_LENGTH = 32;
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  private final int iterations;
+  private final String unknownUserHash;
+
+  public PasswordHasher() {
+    this(DEFAULT_ITERATIONS);
+  }
+
+  public PasswordHasher(int iterations) {
+    if (iterations < 1) {
+      throw new IllegalArgumentException("At least one iteration is required.");
+    }
+    this.iterations = iterations;
+    // Only its salt and cost are ever used, so the key itself can be anything.
+    byte[] salt = new byte[SALT_LENGTH];
+    SECURE_RANDOM.nextBytes(salt);
+    this.unknownUserHash = format(iterations, salt, new byte[DERIVED_KEY_LENGTH]);
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  public String hash(String password) {
+    byte[] salt = new byte[SALT_LENGTH];
+    SECURE_RANDOM.nextBytes(salt);
+    return format(iterations, salt, derive(password, salt, iterations));
+  }
+
+  public boolean verify(String password, String storedHash) {
+    if (storedHash == null) {
+      // An unknown user costs as much to reject as a wrong password, so response times do not
+      // reveal which usernames exist.
+      verify(password, unknownUserHash);
+      return false;
+    }
+    if (!storedHash.startsWith(ALGORITHM + SEPARATOR)) {
+      return MessageDigest.isEqual(
+          HashingUtils.legacySha256(password).getBytes(StandardCharsets.UTF_8),
+          storedHash.getBytes(StandardCharsets.UTF_8));
+    }
+    // Stored hashes are self-describing: pbkdf2-sha256$<iterations>$<salt>$<derived key>.
+    String[] fields = storedHash.split("\\$");
+    if (fields.length != 4) {
+      return false;
+    }
+    try {
+      int storedIterations = Integer.parseInt(fields[1]);
+      byte[] salt = Base64.getDecoder().decode(fields[2]);
+      byte[] expectedKey = Base64.getDecoder().decode(fields[3]);
+      return storedIterations > 0
+          && MessageDigest.isEqual(derive(password, salt, storedIterations), expectedKey);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  public boolean needsRehash(String storedHash) {
+    return !storedHash.startsWith(ALGORITHM + SEPARATOR + iterations + SEPARATOR);
+  }
+
+  private static byte[] derive(String password, byte[] salt, int iterations) {
+    return HashingUtils.pbkdf2HmacSha256(password.getBytes(StandardCharsets.UTF_8), salt,
+        iterations, DERIVED_KEY_LENGTH);
+  }
+
+  private static String format(int iterations, byte[] salt, byte[] derivedKey) {
+    return String.join(SEPARATOR, ALGORITHM, Integer.toString(iterations),
+        Base64.getEncoder().withoutPadding().encodeToString(salt),
+        Base64.getEncoder().withoutPadding().encodeToString(derivedKey));
+  }
+}
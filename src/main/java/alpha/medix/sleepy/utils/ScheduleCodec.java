@@ -0,0 +1,265 @@
+package alpha.medix.sleepy.utils;
+
+import alpha.medix.sleepy.model.AstronautScheduleBuilder;
+import alpha.medix.sleepy.model.Schedule;
+import alpha.medix.sleepy.model.Schedule.Activity;
+import alpha.medix.sleepy.model.Schedule.Type;
+import alpha.medix.sleepy.model.ScheduleTemplate;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+public class ScheduleCodec {
+
+  public static final byte FORMAT_VERSION = 1;
+
+  private static final int INLINE_ACTIVITY_CODE = 0;
+  // Every slot takes at least a byte for its start and a byte for its activity, and every string
+  // at least a byte for its length.
+  private static final int MINIMUM_ENCODED_SLOT_SIZE = 2;
+  private static final int MINIMUM_ENCODED_STRING_SIZE = 1;
+  private static final List<Activity> ACTIVITY_DICTIONARY = AstronautScheduleBuilder.ACTIVITIES;
+  private static final Map<Activity, Integer> ACTIVITY_TO_CODE = activityToCodeFor(
+      ACTIVITY_DICTIONARY);
+
+  public static byte[] encode(Schedule schedule) {
+    ByteBuffer buffer = ByteBuffer.allocate(encodedSizeOf(schedule));
+    encode(schedule, buffer);
+    return buffer.array();
+  }
+
+  public static void encode(Schedule schedule, ByteBuffer buffer) {
+    buffer.put(FORMAT_VERSION);
+    putString(buffer, schedule.getUsername());
+    buffer.put((byte) schedule.getType().ordinal());
+    putVarLong(buffer, schedule.getWorkDurationInMinutes());
+    Instant timeOfCreation = schedule.getTimeOfCreation().toInstant(ZoneOffset.UTC);
+    putVarLong(buffer, timeOfCreation.getEpochSecond());
+    putVarLong(buffer, timeOfCreation.getNano());
+
+    ScheduleTemplate template = schedule.getTemplate();
+    putVarLong(buffer, template.size());
+    int previousStartMinute = 0;
+    for (int i = 0; i < template.size(); i++) {
+      int startMinute = template.startMinuteOf(i);
+      putVarLong(buffer, startMinute - previousStartMinute);
+      previousStartMinute = startMinute;
+
+      Activity activity = template.activityOf(i);
+      Integer activityCode = ACTIVITY_TO_CODE.get(activity);
+      if (activityCode != null) {
+        putVarLong(buffer, activityCode);
+      } else {
+        putVarLong(buffer, INLINE_ACTIVITY_CODE);
+        putString(buffer, activity.getTitle());
+        putVarLong(buffer, activity.getTips().size());
+        activity.getTips().forEach(tip -> putString(buffer, tip));
+      }
+    }
+  }
+
+  public static Schedule decode(ByteBuffer buffer) throws IOException {
+    try {
+      byte formatVersion = buffer.get();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException(
+            String.format("Unsupported schedule format version %d.", formatVersion));
+      }
+      String username = getString(buffer);
+      Type type = Type.values()[buffer.get()];
+      long workDurationInMinutes = getVarLong(buffer);
+      LocalDateTime timeOfCreation = LocalDateTime
+          .ofEpochSecond(getVarLong(buffer), (int) getVarLong(buffer), ZoneOffset.UTC);
+
+      ScheduleTemplate.Builder template = ScheduleTemplate.builder();
+      int numberOfSlots = getLength(buffer, MINIMUM_ENCODED_SLOT_SIZE);
+      int startMinute = 0;
+      for (int i = 0; i < numberOfSlots; i++) {
+        startMinute += (int) getVarLong(buffer);
+        int activityCode = (int) getVarLong(buffer);
+        Activity activity;
+        if (activityCode == INLINE_ACTIVITY_CODE) {
+          String title = getString(buffer);
+          String[] tips = new String[getLength(buffer, MINIMUM_ENCODED_STRING_SIZE)];
+          for (int j = 0; j < tips.length; j++) {
+            tips[j] = getString(buffer);
+          }
+          activity = Activity.of(title, tips);
+        } else {
+          activity = ACTIVITY_DICTIONARY.get(activityCode - 1);
+        }
+        template.addActivity(LocalTime.of(startMinute / 60, startMinute % 60), activity);
+      }
+      return new Schedule(username, type, workDurationInMinutes, timeOfCreation,
+          template.build());
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+        | DateTimeException e) {
+      throw new IOException("Malformed schedule encoding.", e);
+    }
+  }
+
+  public static String decodeUsername(ByteBuffer buffer) throws IOException {
+    try {
+      byte formatVersion = buffer.get();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException(
+            String.format("Unsupported schedule format version %d.", formatVersion));
+      }
+      return getString(buffer);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Malformed schedule encoding.", e);
+    }
+  }
+
+  public static int encodedSizeOf(Schedule schedule) {
+    Instant timeOfCreation = schedule.getTimeOfCreation().toInstant(ZoneOffset.UTC);
+    int size = 1
+        + stringSizeOf(schedule.getUsername())
+        + 1
+        + varLongSizeOf(schedule.getWorkDurationInMinutes())
+        + varLongSizeOf(timeOfCreation.getEpochSecond())
+        + varLongSizeOf(timeOfCreation.getNano());
+
+    ScheduleTemplate template = schedule.getTemplate();
+    size += varLongSizeOf(template.size());
+    int previousStartMinute = 0;
+    for (int i = 0; i < template.size(); i++) {
+      int startMinute = template.startMinuteOf(i);
+      size += varLongSizeOf(startMinute - previousStartMinute);
+      previousStartMinute = startMinute;
+
+      Activity activity = template.activityOf(i);
+      Integer activityCode = ACTIVITY_TO_CODE.get(activity);
+      if (activityCode != null) {
+        size += varLongSizeOf(activityCode);
+      } else {
+        size += varLongSizeOf(INLINE_ACTIVITY_CODE)
+            + stringSizeOf(activity.getTitle())
+            + varLongSizeOf(activity.getTips().size());
+        for (String tip : activity.getTips()) {
+          size += stringSizeOf(tip);
+        }
+      }
+    }
+    return size;
+  }
+
+  private static void putVarLong(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static long getVarLong(ByteBuffer buffer) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte nextByte = buffer.get();
+      value |= (long) (nextByte & 0x7F) << shift;
+      if ((nextByte & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer.");
+  }
+
+  // Counts and lengths are checked against what is left of the buffer before anything is
+  // allocated for them, so a corrupt one fails the decode rather than allocating a huge array.
+  private static int getLength(ByteBuffer buffer, int minimumEncodedSizePerElement)
+      throws IOException {
+    long length = getVarLong(buffer);
+    if (length < 0 || length > buffer.remaining() / minimumEncodedSizePerElement) {
+      throw new IOException(String.format(
+          "Malformed schedule encoding: a length of %d does not fit in the %d bytes left.",
+          length, buffer.remaining()));
+    }
+    return (int) length;
+  }
+
+  private static int varLongSizeOf(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  private static void putString(ByteBuffer buffer, String string) {
+    putVarLong(buffer, utf8LengthOf(string));
+    for (int i = 0; i < string.length(); i++) {
+      char character = string.charAt(i);
+      if (character < 0x80) {
+        buffer.put((byte) character);
+      } else if (character < 0x800) {
+        buffer.put((byte) (0xC0 | (character >> 6)));
+        buffer.put((byte) (0x80 | (character & 0x3F)));
+      } else if (Character.isHighSurrogate(character) && i + 1 < string.length()
+          && Character.isLowSurrogate(string.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(character, string.charAt(++i));
+        buffer.put((byte) (0xF0 | (codePoint >> 18)));
+        buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else {
+        buffer.put((byte) (0xE0 | (character >> 12)));
+        buffer.put((byte) (0x80 | ((character >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (character & 0x3F)));
+      }
+    }
+  }
+
+  private static String getString(ByteBuffer buffer) throws IOException {
+    int length = getLength(buffer, Byte.BYTES);
+    if (buffer.hasArray()) {
+      int offset = buffer.arrayOffset() + buffer.position();
+      buffer.position(buffer.position() + length);
+      return new String(buffer.array(), offset, length, StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int stringSizeOf(String string) {
+    int length = utf8LengthOf(string);
+    return varLongSizeOf(length) + length;
+  }
+
+  private static int utf8LengthOf(String string) {
+    int length = 0;
+    for (int i = 0; i < string.length(); i++) {
+      char character = string.charAt(i);
+      if (character < 0x80) {
+        length += 1;
+      } else if (character < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(character) && i + 1 < string.length()
+          && Character.isLowSurrogate(string.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static Map<Activity, Integer> activityToCodeFor(List<Activity> activityDictionary) {
+    ImmutableMap.Builder<Activity, Integer> activityToCode = ImmutableMap.builder();
+    for (int i = 0; i < activityDictionary.size(); i++) {
+      activityToCode.put(activityDictionary.get(i), i + 1);
+    }
+    return activityToCode.build();
+  }
+}
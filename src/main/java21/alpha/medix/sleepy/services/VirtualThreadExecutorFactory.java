@@ -0,0 +1,15 @@
+package alpha.medix.sleepy.services;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+// Only built by the java21 profile. ParallelExecutionService runs blocking work on virtual
+// threads when, and only when, this class is part of the build.
+class VirtualThreadExecutorFactory implements Supplier<ExecutorService> {
+
+  @Override
+  public ExecutorService get() {
+    return Executors.newVirtualThreadPerTaskExecutor();
+  }
+}
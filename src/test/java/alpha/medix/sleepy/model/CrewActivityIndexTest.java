@@ -0,0 +1,69 @@
+package alpha.medix.sleepy.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import alpha.medix.sleepy.model.Schedule.Activity;
+import alpha.medix.sleepy.model.Schedule.Slot;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CrewActivityIndexTest {
+
+  private final AstronautScheduleBuilder astronautScheduleBuilder = new AstronautScheduleBuilder();
+
+  @BeforeEach
+  void answerQuestions() {
+    for (int i = 0; i < AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.size(); i++) {
+      astronautScheduleBuilder.setQuestionResponse(i,
+          AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.get(i).getPossibleResponses().get(0));
+    }
+  }
+
+  @Test
+  void findsTheCrewDoingAnActivity() {
+    CrewActivityIndex crewActivityIndex = new CrewActivityIndex();
+    Schedule schedule = astronautScheduleBuilder.buildWith("alice", 480);
+    crewActivityIndex.update("alice", schedule);
+    crewActivityIndex.update("bob", astronautScheduleBuilder.buildWith("bob", 480));
+
+    Slot slot = schedule.getSlots().get(0);
+    int minuteOfDay = ScheduleTemplate.minuteOfDay(slot.getStartTime());
+    assertEquals(Set.of("alice", "bob"),
+        crewActivityIndex.whoIsDoing(slot.getActivity(), minuteOfDay));
+    assertEquals(2, crewActivityIndex.occupancyOf(slot.getActivity())[minuteOfDay]);
+  }
+
+  @Test
+  void keepsAnswersUnchangedByLaterUpdates() {
+    CrewActivityIndex crewActivityIndex = new CrewActivityIndex();
+    Schedule schedule = astronautScheduleBuilder.buildWith("alice", 480);
+    crewActivityIndex.update("alice", schedule);
+    Slot slot = schedule.getSlots().get(0);
+    int minuteOfDay = ScheduleTemplate.minuteOfDay(slot.getStartTime());
+
+    Set<String> crew = crewActivityIndex.whoIsDoing(slot.getActivity(), minuteOfDay);
+    crewActivityIndex.update("bob", astronautScheduleBuilder.buildWith("bob", 480));
+
+    assertEquals(Set.of("alice"), crew);
+    assertEquals(Set.of("alice", "bob"),
+        crewActivityIndex.whoIsDoing(slot.getActivity(), minuteOfDay));
+  }
+
+  @Test
+  void doesNotInternActivitiesThatAreOnlyQueried() {
+    CrewActivityIndex crewActivityIndex = new CrewActivityIndex();
+    crewActivityIndex.update("alice", astronautScheduleBuilder.buildWith("alice", 480));
+    int dictionarySize = ActivityDictionary.size();
+
+    for (int i = 0; i < 100; i++) {
+      Activity unseenActivity = Activity.of("Unscheduled activity " + i);
+      assertTrue(crewActivityIndex.whoIsDoing(unseenActivity, 0).isEmpty());
+      assertArrayEquals(new int[ScheduleTemplate.MINUTES_PER_DAY],
+          crewActivityIndex.occupancyOf(unseenActivity));
+    }
+    assertEquals(dictionarySize, ActivityDictionary.size());
+  }
+}
@@ -0,0 +1,137 @@
+package alpha.medix.sleepy.model;
+
+import alpha.medix.sleepy.model.Schedule.Activity;
+import alpha.medix.sleepy.model.Schedule.Slot;
+import alpha.medix.sleepy.model.Schedule.Type;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Heap retained by 100k and 1M schedules, in the template layout and in the layout it replaced,
+// where every schedule held its own TreeMap<LocalTime, Activity>. The retainedBytesPerSchedule
+// counter is what this compares, and is measured once per run since JMH sums such counters over
+// iterations. The time score includes building the schedules and two full collections, so it is
+// only a rough guide.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=ScheduleFootprintBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g", "-XX:+UseSerialGC"})
+public class ScheduleFootprintBenchmark {
+
+  private static final int NUMBER_OF_SURVEY_ANSWERS = 64;
+  private static final int NUMBER_OF_USERS = 1000;
+
+  @Param({"100000", "1000000"})
+  private int numberOfSchedules;
+
+  @Param({"TEMPLATE", "TREE_MAP"})
+  private Layout layout;
+
+  private List<AstronautScheduleBuilder> astronautScheduleBuilders;
+  private Object[] schedules;
+
+  @Setup
+  public void setUp() {
+    // Crews answer the survey in a limited number of ways, which is what lets templates be
+    // shared, so the schedules are spread over a fixed set of answers.
+    Random random = new Random(1);
+    astronautScheduleBuilders = new ArrayList<>(NUMBER_OF_SURVEY_ANSWERS);
+    for (int i = 0; i < NUMBER_OF_SURVEY_ANSWERS; i++) {
+      AstronautScheduleBuilder astronautScheduleBuilder = new AstronautScheduleBuilder();
+      for (int j = 0; j < AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.size(); j++) {
+        List<String> possibleResponses =
+            AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.get(j).getPossibleResponses();
+        astronautScheduleBuilder.setQuestionResponse(j,
+            possibleResponses.get(random.nextInt(possibleResponses.size())));
+      }
+      astronautScheduleBuilders.add(astronautScheduleBuilder);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void dropSchedules() {
+    schedules = null;
+  }
+
+  @Benchmark
+  public Object[] build(Footprint footprint) {
+    long usedBytesBefore = usedHeapAfterCollection();
+    Random random = new Random(numberOfSchedules);
+    schedules = new Object[numberOfSchedules];
+    for (int i = 0; i < numberOfSchedules; i++) {
+      Schedule schedule = astronautScheduleBuilders.get(i % NUMBER_OF_SURVEY_ANSWERS)
+          .buildWith("astronaut" + (i % NUMBER_OF_USERS), random.nextInt(580));
+      schedules[i] = layout == Layout.TEMPLATE ? schedule : new TreeMapSchedule(schedule);
+    }
+    footprint.retainedBytesPerSchedule =
+        (usedHeapAfterCollection() - usedBytesBefore) / numberOfSchedules;
+    return schedules;
+  }
+
+  private static long usedHeapAfterCollection() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  public enum Layout {
+    TEMPLATE, TREE_MAP
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    public long retainedBytesPerSchedule;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      retainedBytesPerSchedule = 0;
+    }
+  }
+
+  // A schedule as it was stored before templates, with its own map of start times to
+  // activities.
+  private static class TreeMapSchedule {
+
+    private final String username;
+    private final Type type;
+    private final long workDurationInMinutes;
+    private final LocalDateTime timeOfCreation;
+    private final TreeMap<LocalTime, Activity> slots;
+
+    private TreeMapSchedule(Schedule schedule) {
+      this.username = schedule.getUsername();
+      this.type = schedule.getType();
+      this.workDurationInMinutes = schedule.getWorkDurationInMinutes();
+      this.timeOfCreation = schedule.getTimeOfCreation();
+      this.slots = new TreeMap<>();
+      for (Slot slot : schedule.getSlots()) {
+        slots.put(slot.getStartTime(), slot.getActivity());
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package alpha.medix.sleepy.model;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 64 threads adding schedules at once, spread over a single user (every add contends for the same
+// entry) up to many users, and with short and long histories, since each add has to produce a
+// new immutable history. The mixed group also reads histories while they are being written.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=ScheduleManagerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleManagerBenchmark {
+
+  private static final int NUMBER_OF_SCHEDULES = 1024;
+
+  @Param({"1", "64", "10000"})
+  private int numberOfUsers;
+
+  @Param({"16", "1024"})
+  private int maximumSchedulesPerUser;
+
+  private ScheduleManager scheduleManager;
+  private String[] usernames;
+  private Schedule[] schedules;
+
+  @Setup
+  public void setUp() {
+    scheduleManager = new ScheduleManager(maximumSchedulesPerUser, (username, evicted) -> {
+    });
+    usernames = new String[numberOfUsers];
+    for (int i = 0; i < numberOfUsers; i++) {
+      usernames[i] = "astronaut" + i;
+    }
+    // Schedules are built up front and reused, so only the manager itself is measured.
+    AstronautScheduleBuilder astronautScheduleBuilder = new AstronautScheduleBuilder();
+    for (int i = 0; i < AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.size(); i++) {
+      astronautScheduleBuilder.setQuestionResponse(i,
+          AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.get(i).getPossibleResponses().get(0));
+    }
+    schedules = new Schedule[NUMBER_OF_SCHEDULES];
+    for (int i = 0; i < NUMBER_OF_SCHEDULES; i++) {
+      schedules[i] = astronautScheduleBuilder.buildWith(usernames[i % numberOfUsers], 60 + i);
+    }
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void add() {
+    addRandomSchedule();
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(64)
+  public void addWhileReading() {
+    addRandomSchedule();
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(8)
+  public Schedule readWhileAdding() {
+    List<Schedule> history = scheduleManager
+        .getSchedulesFor(usernames[ThreadLocalRandom.current().nextInt(numberOfUsers)]);
+    return history.isEmpty() ? null : history.get(history.size() - 1);
+  }
+
+  private void addRandomSchedule() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    scheduleManager.add(usernames[random.nextInt(numberOfUsers)],
+        schedules[random.nextInt(NUMBER_OF_SCHEDULES)]);
+  }
+}
@@ -0,0 +1,141 @@
+package alpha.medix.sleepy.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScheduleManagerTest {
+
+  private final AstronautScheduleBuilder astronautScheduleBuilder = new AstronautScheduleBuilder();
+  private final List<Schedule> evictedSchedules = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  void answerQuestions() {
+    for (int i = 0; i < AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.size(); i++) {
+      astronautScheduleBuilder.setQuestionResponse(i,
+          AstronautScheduleBuilder.CHRONO_TYPE_QUESTIONS.get(i).getPossibleResponses().get(0));
+    }
+  }
+
+  @Test
+  void keepsTheNewestSchedulesAndEvictsTheRestInOrder() {
+    ScheduleManager scheduleManager = newScheduleManager(3);
+    for (int i = 0; i < 10; i++) {
+      scheduleManager.add("alice", schedule("alice", i));
+    }
+    assertEquals(List.of(7L, 8L, 9L), workDurationsOf(scheduleManager.getSchedulesFor("alice")));
+    assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L), workDurationsOf(evictedSchedules));
+  }
+
+  @Test
+  void leavesEarlierSnapshotsUnchanged() {
+    ScheduleManager scheduleManager = newScheduleManager(5);
+    List<List<Schedule>> snapshots = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      scheduleManager.add("alice", schedule("alice", i));
+      snapshots.add(scheduleManager.getSchedulesFor("alice"));
+    }
+    for (int i = 0; i < snapshots.size(); i++) {
+      List<Long> expected = new ArrayList<>();
+      for (long duration = Math.max(0, i - 4); duration <= i; duration++) {
+        expected.add(duration);
+      }
+      assertEquals(expected, workDurationsOf(snapshots.get(i)));
+    }
+  }
+
+  @Test
+  void keepsEverythingWhenUnbounded() {
+    ScheduleManager scheduleManager = new ScheduleManager();
+    for (int i = 0; i < 1000; i++) {
+      scheduleManager.add("alice", schedule("alice", i));
+    }
+    List<Schedule> schedules = scheduleManager.getSchedulesFor("alice");
+    assertEquals(1000, schedules.size());
+    assertEquals(999, schedules.get(999).getWorkDurationInMinutes());
+  }
+
+  @Test
+  void returnsHistoriesThatCannotBeModified() {
+    ScheduleManager scheduleManager = newScheduleManager(3);
+    scheduleManager.add("alice", schedule("alice", 1));
+    List<Schedule> schedules = scheduleManager.getSchedulesFor("alice");
+    assertThrows(UnsupportedOperationException.class,
+        () -> schedules.add(schedule("alice", 2)));
+    assertThrows(UnsupportedOperationException.class, () -> schedules.set(0, null));
+    assertTrue(scheduleManager.getSchedulesFor("bob").isEmpty());
+  }
+
+  @Test
+  void doesNotEvictWhenRestoring() {
+    ScheduleManager scheduleManager = newScheduleManager(2);
+    for (int i = 0; i < 5; i++) {
+      scheduleManager.restore("alice", schedule("alice", i));
+    }
+    assertEquals(List.of(3L, 4L), workDurationsOf(scheduleManager.getSchedulesFor("alice")));
+    assertTrue(evictedSchedules.isEmpty());
+  }
+
+  @Test
+  void losesNoScheduleUnderConcurrentWriters() throws InterruptedException {
+    int numberOfWriters = 64;
+    int schedulesPerWriter = 200;
+    int maximumSchedulesPerUser = 16;
+    ScheduleManager scheduleManager = newScheduleManager(maximumSchedulesPerUser);
+    Schedule schedule = schedule("alice", 1);
+    AtomicInteger failures = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> writers = new ArrayList<>();
+    for (int i = 0; i < numberOfWriters; i++) {
+      Thread writer = new Thread(() -> {
+        try {
+          start.await();
+          for (int j = 0; j < schedulesPerWriter; j++) {
+            scheduleManager.add("alice", schedule);
+            if (scheduleManager.getSchedulesFor("alice").size() > maximumSchedulesPerUser) {
+              failures.incrementAndGet();
+            }
+          }
+        } catch (InterruptedException e) {
+          failures.incrementAndGet();
+        }
+      });
+      writer.start();
+      writers.add(writer);
+    }
+    start.countDown();
+    for (Thread writer : writers) {
+      writer.join();
+    }
+
+    assertEquals(0, failures.get());
+    assertEquals(maximumSchedulesPerUser, scheduleManager.getSchedulesFor("alice").size());
+    assertEquals(numberOfWriters * schedulesPerWriter - maximumSchedulesPerUser,
+        evictedSchedules.size());
+    assertEquals(numberOfWriters * schedulesPerWriter, scheduleManager.getVersion());
+  }
+
+  private ScheduleManager newScheduleManager(int maximumSchedulesPerUser) {
+    return new ScheduleManager(maximumSchedulesPerUser,
+        (username, schedules) -> evictedSchedules.addAll(schedules));
+  }
+
+  private Schedule schedule(String username, long workDurationInMinutes) {
+    return astronautScheduleBuilder.buildWith(username, workDurationInMinutes);
+  }
+
+  private static List<Long> workDurationsOf(List<Schedule> schedules) {
+    return schedules.stream()
+        .map(Schedule::getWorkDurationInMinutes)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,100 @@
+package alpha.medix.sleepy.model;
+
+import alpha.medix.sleepy.utils.PasswordHasher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Registrations and lookups from 16 threads against a crew of 100k, including registrations that
+// race with bulk reloads and so go through the swap-and-retry in registerHashedUser. Passwords
+// come pre-hashed, so only the credential store itself is measured.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=UserCredentialManagerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserCredentialManagerBenchmark {
+
+  private static final int CREW_SIZE = 100_000;
+  private static final int REGISTRATIONS_PER_BATCH = 20_000;
+  private static final String HASHED_PASSWORD = new PasswordHasher(1).hash("password");
+
+  private final AtomicLong registrationCount = new AtomicLong();
+  private UserCredentialManager userCredentialManager;
+  private List<UserCredentials> crew;
+
+  @Setup
+  public void setUp() {
+    crew = new ArrayList<>(CREW_SIZE);
+    for (int i = 0; i < CREW_SIZE; i++) {
+      crew.add(new UserCredentials("astronaut" + i, HASHED_PASSWORD));
+    }
+    userCredentialManager = new UserCredentialManager(new PasswordHasher(1),
+        (username, hashedPassword) -> {
+        });
+  }
+
+  // Registrations made during an iteration are thrown away before the next one.
+  @Setup(Level.Iteration)
+  public void reload() {
+    userCredentialManager.updateWith(crew);
+  }
+
+  // Timed per batch of registrations on each thread rather than for a fixed time, so the number
+  // of users added before the next reload is bounded.
+  @Benchmark
+  @Threads(16)
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5, batchSize = REGISTRATIONS_PER_BATCH)
+  @Measurement(iterations = 10, batchSize = REGISTRATIONS_PER_BATCH)
+  public List<String> register() {
+    return registerNewcomer();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public boolean lookUp() {
+    return userCredentialManager
+        .containsUser("astronaut" + ThreadLocalRandom.current().nextInt(CREW_SIZE));
+  }
+
+  @Benchmark
+  @Group("registerWhileReloading")
+  @GroupThreads(15)
+  public List<String> registerDuringReloads() {
+    return registerNewcomer();
+  }
+
+  @Benchmark
+  @Group("registerWhileReloading")
+  @GroupThreads(1)
+  public void reloadDuringRegistrations() {
+    userCredentialManager.updateWith(crew);
+  }
+
+  private List<String> registerNewcomer() {
+    return userCredentialManager.registerHashedUsers(List.of(new UserCredentials(
+        "newcomer" + registrationCount.incrementAndGet(), HASHED_PASSWORD)));
+  }
+}
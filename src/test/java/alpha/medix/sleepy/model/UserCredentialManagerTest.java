@@ -0,0 +1,159 @@
+package alpha.medix.sleepy.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import alpha.medix.sleepy.utils.PasswordHasher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class UserCredentialManagerTest {
+
+  private static final int NUMBER_OF_THREADS = 16;
+  private static final int NUMBER_OF_USERNAMES = 2_000;
+  private static final int NUMBER_OF_RELOADED_USERS = 20_000;
+
+  // A single iteration keeps hashing out of the way of the races being tested.
+  private final PasswordHasher passwordHasher = new PasswordHasher(1);
+  private final Map<String, AtomicInteger> usernameToChangeCount = new ConcurrentHashMap<>();
+  private final UserCredentialManager userCredentialManager = new UserCredentialManager(
+      passwordHasher, (username, hashedPassword) -> usernameToChangeCount
+      .computeIfAbsent(username, key -> new AtomicInteger()).incrementAndGet());
+  private final ExecutorService executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+
+  @AfterEach
+  void shutDownExecutor() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  void registersEachUsernameExactlyOnce() throws Exception {
+    AtomicInteger successfulRegistrations = new AtomicInteger();
+    runOnEveryThread(() -> {
+      for (int i = 0; i < NUMBER_OF_USERNAMES; i++) {
+        if (userCredentialManager.registerNewUser("user" + i, "password" + i)) {
+          successfulRegistrations.incrementAndGet();
+        }
+      }
+    });
+
+    assertEquals(NUMBER_OF_USERNAMES, successfulRegistrations.get());
+    assertEquals(NUMBER_OF_USERNAMES, userCredentialManager.size());
+    assertEquals(NUMBER_OF_USERNAMES, usernameToChangeCount.size());
+    usernameToChangeCount.values().forEach(changeCount -> assertEquals(1, changeCount.get()));
+    assertEquals(NUMBER_OF_USERNAMES, userCredentialManager.getVersion());
+    for (int i = 0; i < NUMBER_OF_USERNAMES; i++) {
+      assertTrue(userCredentialManager.verifyExistingUser("user" + i, "password" + i));
+    }
+  }
+
+  @Test
+  void neverExposesAHalfReloadedSetOfUsers() throws Exception {
+    List<UserCredentials> crewA = crewNamed("a", NUMBER_OF_RELOADED_USERS);
+    List<UserCredentials> crewB = crewNamed("b", NUMBER_OF_RELOADED_USERS);
+    userCredentialManager.updateWith(crewA);
+    AtomicBoolean isReloading = new AtomicBoolean(true);
+    AtomicLong tornReads = new AtomicLong();
+    AtomicLong reads = new AtomicLong();
+
+    Future<?> reloader = executorService.submit(() -> {
+      for (int i = 0; i < 50; i++) {
+        userCredentialManager.updateWith(i % 2 == 0 ? crewB : crewA);
+      }
+      isReloading.set(false);
+    });
+    runOnThreads(NUMBER_OF_THREADS - 1, () -> {
+      while (isReloading.get()) {
+        List<UserCredentials> snapshot = userCredentialManager.toList();
+        String prefix = snapshot.get(0).getUsername().substring(0, 1);
+        if (snapshot.size() != NUMBER_OF_RELOADED_USERS || !snapshot.stream()
+            .allMatch(userCredentials -> userCredentials.getUsername().startsWith(prefix))) {
+          tornReads.incrementAndGet();
+        }
+        reads.incrementAndGet();
+      }
+    });
+    reloader.get();
+
+    assertTrue(reads.get() > 0);
+    assertEquals(0, tornReads.get());
+  }
+
+  @Test
+  void keepsRegistrationsThatRaceWithReloadsConsistent() throws Exception {
+    List<UserCredentials> crew = crewNamed("crew", NUMBER_OF_RELOADED_USERS);
+    userCredentialManager.updateWith(crew);
+    AtomicBoolean isReloading = new AtomicBoolean(true);
+    AtomicInteger successfulRegistrations = new AtomicInteger();
+    AtomicInteger reloads = new AtomicInteger();
+
+    // Every reload throws away the registrations before it, so each registration that raced
+    // with one is retried against whichever set of users is current.
+    Future<?> reloader = executorService.submit(() -> {
+      while (isReloading.get()) {
+        userCredentialManager.updateWith(crew);
+        reloads.incrementAndGet();
+      }
+    });
+    runOnThreads(NUMBER_OF_THREADS - 1, () -> {
+      for (int i = 0; i < NUMBER_OF_USERNAMES; i++) {
+        String username = Thread.currentThread().getName() + "-" + i;
+        if (userCredentialManager.registerNewUser(username, "password")) {
+          successfulRegistrations.incrementAndGet();
+        }
+      }
+    });
+    isReloading.set(false);
+    reloader.get();
+
+    assertTrue(reloads.get() > 0);
+    // Every username is registered exactly once, and counted once, even when its first attempt
+    // landed in a set of users that a reload had just replaced.
+    assertEquals((NUMBER_OF_THREADS - 1) * NUMBER_OF_USERNAMES, successfulRegistrations.get());
+    assertEquals(successfulRegistrations.get() + reloads.get() + 1,
+        userCredentialManager.getVersion());
+    userCredentialManager.updateWith(crew);
+    assertEquals(NUMBER_OF_RELOADED_USERS, userCredentialManager.size());
+    assertTrue(userCredentialManager.registerNewUser("late arrival", "password"));
+    assertTrue(userCredentialManager.verifyExistingUser("late arrival", "password"));
+  }
+
+  private void runOnEveryThread(Runnable work) throws Exception {
+    runOnThreads(NUMBER_OF_THREADS, work);
+  }
+
+  // Starts the work on the given number of threads at once and waits for all of them.
+  private void runOnThreads(int numberOfThreads, Runnable work) throws Exception {
+    CyclicBarrier start = new CyclicBarrier(numberOfThreads);
+    List<Future<?>> results = new ArrayList<>();
+    for (int i = 0; i < numberOfThreads; i++) {
+      results.add(executorService.submit(() -> {
+        start.await();
+        work.run();
+        return null;
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+  }
+
+  private static List<UserCredentials> crewNamed(String prefix, int numberOfUsers) {
+    List<UserCredentials> crew = new ArrayList<>(numberOfUsers);
+    for (int i = 0; i < numberOfUsers; i++) {
+      crew.add(new UserCredentials(prefix + i, "hash"));
+    }
+    return crew;
+  }
+}
@@ -0,0 +1,77 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.services.ParallelExecutionService.ExecutionMode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Persistence tasks per second when a burst of 10k of them is submitted at once, under each
+// execution mode. Every task writes and forces a small file, as saving a user's state would.
+// VIRTUAL_THREADS needs the java21 profile and a Java 21 JVM; on other builds, pass
+// -p executionMode=PLATFORM_THREADS.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=ParallelExecutionServiceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ParallelExecutionServiceBenchmark {
+
+  private static final int BURST_SIZE = 10_000;
+  private static final byte[] CONTENT = new byte[256];
+
+  @Param({"PLATFORM_THREADS", "VIRTUAL_THREADS"})
+  private ExecutionMode executionMode;
+
+  private ParallelExecutionService parallelExecutionService;
+  private Path directory;
+
+  @Setup
+  public void setUp() throws IOException {
+    parallelExecutionService = new ParallelExecutionService(executionMode);
+    directory = Files.createTempDirectory("persistence-benchmark");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    parallelExecutionService.shutdown();
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST_SIZE)
+  public void persistBurst() {
+    CompletableFuture<?>[] results = new CompletableFuture<?>[BURST_SIZE];
+    for (int i = 0; i < BURST_SIZE; i++) {
+      Path path = directory.resolve(i + ".bin");
+      results[i] = parallelExecutionService.submitBlocking(() -> {
+        PersistenceService.writeAtomically(path, outputStream -> outputStream.write(CONTENT));
+        return null;
+      });
+    }
+    // A rejected or failed task fails the whole run, since the burst has to be admitted in full.
+    CompletableFuture.allOf(results).join();
+  }
+}
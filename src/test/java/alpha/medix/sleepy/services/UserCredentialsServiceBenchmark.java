@@ -0,0 +1,99 @@
+package alpha.medix.sleepy.services;
+
+import alpha.medix.sleepy.model.UserCredentialManager;
+import alpha.medix.sleepy.model.UserCredentials;
+import alpha.medix.sleepy.utils.PasswordHasher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time to load a 500k-user user_credentials.json at startup, streamed record by record as the
+// service does now, and read whole into a String and then an array as it used to be. Add
+// -prof gc to compare how much each load allocates.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=UserCredentialsServiceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class UserCredentialsServiceBenchmark {
+
+  private static final int NUMBER_OF_USERS = 500_000;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Param({"STREAMING", "READ_ALL"})
+  private LoadPath loadPath;
+
+  private Path directory;
+  private UserCredentialsService userCredentialsService;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("user-credentials-benchmark");
+    // A single iteration is enough to give every user a hash of the real shape.
+    PasswordHasher passwordHasher = new PasswordHasher(1);
+    List<UserCredentials> userCredentialsList = new ArrayList<>(NUMBER_OF_USERS);
+    for (int i = 0; i < NUMBER_OF_USERS; i++) {
+      userCredentialsList.add(
+          new UserCredentials("astronaut" + i, passwordHasher.hash("password" + i)));
+    }
+    new UserCredentialsService(directory.toString())
+        .writeUserCredentialsToDisk(userCredentialsList);
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeService() throws IOException {
+    if (userCredentialsService != null) {
+      userCredentialsService.close();
+      userCredentialsService = null;
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public UserCredentialManager load() throws IOException {
+    UserCredentialManager userCredentialManager = new UserCredentialManager();
+    if (loadPath == LoadPath.STREAMING) {
+      userCredentialsService = new UserCredentialsService(directory.toString());
+      userCredentialsService.loadUserCredentialsInto(userCredentialManager);
+    } else {
+      String json = new String(Files.readAllBytes(directory.resolve("user_credentials.json")));
+      userCredentialManager.updateWith(
+          Arrays.asList(OBJECT_MAPPER.readValue(json, UserCredentials[].class)));
+    }
+    return userCredentialManager;
+  }
+
+  public enum LoadPath {
+    STREAMING, READ_ALL
+  }
+}
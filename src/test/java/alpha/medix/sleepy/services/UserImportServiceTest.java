@@ -0,0 +1,89 @@
+package alpha.medix.sleepy.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import alpha.medix.sleepy.model.UserCredentialManager;
+import alpha.medix.sleepy.services.ParallelExecutionService.ExecutionMode;
+import alpha.medix.sleepy.services.UserImportService.ImportReport;
+import alpha.medix.sleepy.services.UserImportService.Rejection;
+import alpha.medix.sleepy.utils.PasswordHasher;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserImportServiceTest {
+
+  @TempDir
+  Path configPath;
+
+  private final PasswordHasher passwordHasher = new PasswordHasher(1);
+  private final UserCredentialManager userCredentialManager = new UserCredentialManager(
+      passwordHasher, (username, hashedPassword) -> {
+      });
+  private final ParallelExecutionService parallelExecutionService =
+      new ParallelExecutionService(ExecutionMode.PLATFORM_THREADS);
+  private UserCredentialsService userCredentialsService;
+  private UserImportService userImportService;
+
+  @BeforeEach
+  void startServices() throws IOException {
+    userCredentialsService = new UserCredentialsService(configPath.toString());
+    userCredentialsService.loadUserCredentialsInto(userCredentialManager);
+    userImportService = new UserImportService(userCredentialManager, userCredentialsService,
+        passwordHasher, parallelExecutionService);
+  }
+
+  @AfterEach
+  void stopServices() throws IOException {
+    userCredentialsService.close();
+    parallelExecutionService.shutdown();
+  }
+
+  @Test
+  void rejectsCredentialsThatAreNotStrings() throws Exception {
+    ImportReport report = importJson("["
+        + "{\"username\": \"alice\", \"password\": 123},"
+        + "{\"username\": \"bob\", \"password\": true},"
+        + "{\"username\": 42, \"password\": \"secret\"},"
+        + "{\"username\": {\"username\": \"mallory\", \"password\": \"x\"}, \"password\": \"y\"},"
+        + "{\"username\": \"carol\", \"password\": [\"p\", {\"q\": 1}]},"
+        + "{\"username\": \"dave\", \"password\": \"secret\"}"
+        + "]");
+
+    assertEquals(1, report.getImportedCount());
+    assertEquals(5, report.getRejectedCount());
+    Map<String, String> usernameToReason = report.getRejections().stream()
+        .filter(rejection -> rejection.getUsername() != null)
+        .collect(Collectors.toMap(Rejection::getUsername, Rejection::getReason));
+    assertEquals("Password is not a string", usernameToReason.get("alice"));
+    assertEquals("Password is not a string", usernameToReason.get("bob"));
+    assertEquals("Password is not a string", usernameToReason.get("carol"));
+    assertTrue(userCredentialManager.containsUser("dave"));
+    assertFalse(userCredentialManager.containsUser("alice"));
+    assertFalse(userCredentialManager.containsUser("mallory"));
+  }
+
+  @Test
+  void stripsJsonUsernamesLikeCsvOnes() throws Exception {
+    ImportReport report = importJson("[{\"username\": \" alice \", \"password\": \"secret\"}]");
+
+    assertEquals(1, report.getImportedCount());
+    assertTrue(userCredentialManager.containsUser("alice"));
+  }
+
+  private ImportReport importJson(String json) throws Exception {
+    Path rosterPath = configPath.resolve("roster.json");
+    Files.write(rosterPath, json.getBytes(StandardCharsets.UTF_8));
+    return userImportService.importUsersFrom(rosterPath, report -> {
+    });
+  }
+}
@@ -0,0 +1,71 @@
+package alpha.medix.sleepy.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.junit.jupiter.api.Test;
+
+class HashingUtilsTest {
+
+  // Test vectors for PBKDF2-HMAC-SHA256 from RFC 7914, section 11.
+  @Test
+  void pbkdf2HmacSha256MatchesRfc7914WithOneIteration() {
+    assertEquals(
+        "55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc"
+            + "49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783",
+        HashingUtils.toHex(pbkdf2HmacSha256("passwd", "salt", 1, 64)));
+  }
+
+  @Test
+  void pbkdf2HmacSha256MatchesRfc7914WithManyIterations() {
+    assertEquals(
+        "4ddcd8f60b98be21830cee5ef22701f9641a4418d04c0414aeff08876b34ab56"
+            + "a1d425a1225833549adb841b51c9b3176a272bdebba1d078478f62b397f33c8d",
+        HashingUtils.toHex(pbkdf2HmacSha256("Password", "NaCl", 80_000, 64)));
+  }
+
+  @Test
+  void pbkdf2HmacSha256MatchesTheJdkImplementation() throws GeneralSecurityException {
+    SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+    Random random = new Random(7914);
+    String[] passwords = {"a", "correct horse battery staple", "pässwörd", "密码"};
+    int[] derivedKeyLengths = {1, 20, 32, 33, 64, 100};
+    for (String password : passwords) {
+      for (int derivedKeyLength : derivedKeyLengths) {
+        byte[] salt = new byte[random.nextInt(32) + 1];
+        random.nextBytes(salt);
+        int iterations = random.nextInt(2_000) + 1;
+        byte[] expectedKey = keyFactory.generateSecret(
+            new PBEKeySpec(password.toCharArray(), salt, iterations, derivedKeyLength * 8))
+            .getEncoded();
+        assertArrayEquals(expectedKey, HashingUtils.pbkdf2HmacSha256(
+            password.getBytes(StandardCharsets.UTF_8), salt, iterations, derivedKeyLength),
+            () -> String.format("password \"%s\", %d iterations, %d bytes", password, iterations,
+                derivedKeyLength));
+      }
+    }
+  }
+
+  @Test
+  void toHexEncodesEveryByteLosslessly() {
+    byte[] bytes = new byte[256];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    String hex = HashingUtils.toHex(bytes);
+    assertEquals(512, hex.length());
+    assertEquals("00017f80feff", hex.substring(0, 4) + hex.substring(254, 258)
+        + hex.substring(508));
+  }
+
+  private static byte[] pbkdf2HmacSha256(String password, String salt, int iterations,
+      int derivedKeyLength) {
+    return HashingUtils.pbkdf2HmacSha256(password.getBytes(StandardCharsets.UTF_8),
+        salt.getBytes(StandardCharsets.UTF_8), iterations, derivedKeyLength);
+  }
+}
@@ -0,0 +1,91 @@
+package alpha.medix.sleepy.utils;
+
+import alpha.medix.sleepy.model.UserCredentials;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Reading and writing a list of user credentials through JsonUtils' cached readers and writers,
+// straight from and to bytes or streams, against the ObjectMapper calls through a String it used
+// to make.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=JsonUtilsBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Param({"1", "1000"})
+  private int numberOfUsers;
+
+  private List<UserCredentials> userCredentialsList;
+  private byte[] json;
+
+  @Setup
+  public void setUp() throws IOException {
+    PasswordHasher passwordHasher = new PasswordHasher(1);
+    userCredentialsList = new ArrayList<>(numberOfUsers);
+    for (int i = 0; i < numberOfUsers; i++) {
+      userCredentialsList.add(
+          new UserCredentials("astronaut" + i, passwordHasher.hash("password" + i)));
+    }
+    json = OBJECT_MAPPER.writeValueAsBytes(userCredentialsList);
+  }
+
+  @Benchmark
+  public UserCredentials[] readThroughString() throws IOException {
+    return OBJECT_MAPPER.readValue(new String(json), UserCredentials[].class);
+  }
+
+  @Benchmark
+  public UserCredentials[] readWithJsonUtils() throws IOException {
+    return JsonUtils.fromJson(json, UserCredentials[].class);
+  }
+
+  @Benchmark
+  public List<UserCredentials> readStreamWithJsonUtils() throws IOException {
+    try (MappingIterator<UserCredentials> userCredentialsIterator = JsonUtils
+        .fromJsonArray(new ByteArrayInputStream(json), UserCredentials.class)) {
+      return userCredentialsIterator.readAll();
+    }
+  }
+
+  @Benchmark
+  public byte[] writeThroughString() throws IOException {
+    return OBJECT_MAPPER.writeValueAsString(userCredentialsList).getBytes();
+  }
+
+  @Benchmark
+  public byte[] writeWithJsonUtils() throws IOException {
+    return JsonUtils.toJsonBytes(userCredentialsList);
+  }
+
+  @Benchmark
+  public byte[] writeStreamWithJsonUtils() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonUtils.toJson(userCredentialsList, outputStream);
+    return outputStream.toByteArray();
+  }
+}
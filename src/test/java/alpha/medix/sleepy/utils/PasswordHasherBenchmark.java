@@ -0,0 +1,55 @@
+package alpha.medix.sleepy.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Hashes per second at each cost, for sizing PasswordHasher.DEFAULT_ITERATIONS against the
+// login latency we can afford. A login verifies once, and a registration hashes once.
+//
+//   mvn test-compile exec:java -Dexec.classpathScope=test \
+//       -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=PasswordHasherBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+  @Param({"10000", "100000", "210000", "600000"})
+  private int iterations;
+
+  private PasswordHasher passwordHasher;
+  private String storedHash;
+
+  @Setup
+  public void setUp() {
+    passwordHasher = new PasswordHasher(iterations);
+    storedHash = passwordHasher.hash("correct horse battery staple");
+  }
+
+  @Benchmark
+  public String hash() {
+    return passwordHasher.hash("correct horse battery staple");
+  }
+
+  @Benchmark
+  public boolean verify() {
+    return passwordHasher.verify("correct horse battery staple", storedHash);
+  }
+
+  @Benchmark
+  public boolean verifyUnknownUser() {
+    return passwordHasher.verify("correct horse battery staple", null);
+  }
+}
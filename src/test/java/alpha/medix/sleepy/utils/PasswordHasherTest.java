@@ -0,0 +1,54 @@
+package alpha.medix.sleepy.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PasswordHasherTest {
+
+  private static final int ITERATIONS = 1_000;
+
+  private final PasswordHasher passwordHasher = new PasswordHasher(ITERATIONS);
+
+  @Test
+  void verifiesOnlyTheHashedPassword() {
+    String storedHash = passwordHasher.hash("hunter2");
+    assertTrue(passwordHasher.verify("hunter2", storedHash));
+    assertFalse(passwordHasher.verify("hunter3", storedHash));
+  }
+
+  @Test
+  void saltsEveryHash() {
+    assertNotEquals(passwordHasher.hash("hunter2"), passwordHasher.hash("hunter2"));
+  }
+
+  @Test
+  void rejectsUnknownUsers() {
+    assertFalse(passwordHasher.verify("hunter2", null));
+    assertFalse(passwordHasher.verify("", null));
+  }
+
+  @Test
+  void rejectsMalformedHashes() {
+    assertFalse(passwordHasher.verify("hunter2", "pbkdf2-sha256$1000$not base64$"));
+    assertFalse(passwordHasher.verify("hunter2", "pbkdf2-sha256$0$AAAA$AAAA"));
+    assertFalse(passwordHasher.verify("hunter2", "pbkdf2-sha256$1000"));
+  }
+
+  @Test
+  void verifiesLegacyHashesAndAsksForThemToBeRehashed() {
+    String legacyHash = HashingUtils.legacySha256("hunter2");
+    assertTrue(passwordHasher.verify("hunter2", legacyHash));
+    assertTrue(passwordHasher.needsRehash(legacyHash));
+  }
+
+  @Test
+  void asksForHashesWithADifferentCostToBeRehashed() {
+    String storedHash = new PasswordHasher(ITERATIONS / 2).hash("hunter2");
+    assertTrue(passwordHasher.verify("hunter2", storedHash));
+    assertTrue(passwordHasher.needsRehash(storedHash));
+    assertFalse(passwordHasher.needsRehash(passwordHasher.hash("hunter2")));
+  }
+}